@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ResolvedArtifact;
+
+/**
+ * A DependencyListener that calls another listener from a dedicated thread, so that a slow listener (such as one that
+ * writes a build report or updates an IDE index) doesn't slow down the {@link DependencyService}. The events are put
+ * on a bounded queue and the thread calls the listener with them in the order they were received.
+ * <p>
+ * The artifacts that are fetched while the listener is busy are passed to the listener in a single call to {@link
+ * DependencyListener#artifactsFetched(List)}, up to the maximum batch size. The other events are passed one at a time.
+ * <p>
+ * When the queue is full, the {@link Overflow} determines what happens. By default, the caller waits until there is
+ * room in the queue, which applies back-pressure to the service. The events can be dropped instead, in which case they
+ * are counted (see {@link #getDropped()}).
+ * <p>
+ * The thread is started when the first event is received. {@link #close()} waits for the queued events to be passed to
+ * the listener and stops the thread. If the listener throws an exception or an error, the remaining events are still
+ * dispatched and the first one is rethrown by {@link #close()}. If the thread stops before the listener is closed
+ * (because it was interrupted), nothing takes events from the queue anymore, so sending an event or closing the
+ * listener fails rather than waiting for room in the queue. The thread only stops when the listener is closed, so a
+ * listener that is never closed leaks its thread (and any events that are still queued) until the JVM exits. The
+ * thread is a daemon thread, so it doesn't keep the JVM from exiting.
+ * <p>
+ * Sending an event and closing the listener are guarded by a read-write lock. Any number of events can be sent at
+ * once, but {@link #close()} waits for the events that are being sent to be queued, so every event that was accepted
+ * is queued before the thread is told to stop.
+ *
+ * @author Brian Pontarelli
+ */
+public class AsyncDependencyListener implements DependencyListener, AutoCloseable {
+  private static final Event STOP = new Event(null, null, null, null);
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final DependencyListener listener;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private boolean closed;
+
+  private volatile Throwable failure;
+
+  private int maxBatchSize = 64;
+
+  private Overflow overflow = Overflow.BLOCK;
+
+  private BlockingQueue<Event> queue;
+
+  private int queueSize = 1024;
+
+  private volatile boolean stopped;
+
+  private volatile Thread thread;
+
+  public AsyncDependencyListener(DependencyListener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public void artifactFetched(ResolvedArtifact artifact) {
+    enqueue(new Event(artifact, null, null, null));
+  }
+
+  @Override
+  public void artifactPublished(Artifact artifact) {
+    enqueue(new Event(null, artifact, null, null));
+  }
+
+  /**
+   * Waits for all of the queued events to be passed to the listener and then stops the thread. Events can't be sent to
+   * this listener after it is closed.
+   *
+   * @throws RuntimeException The first exception that the listener threw, if any, or an IllegalStateException if the
+   *                          thread stopped before the listener was closed.
+   * @throws Error The first error that the listener threw, if any.
+   */
+  @Override
+  public void close() {
+    Thread thread;
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      thread = this.thread;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    if (thread != null) {
+      try {
+        if (put(STOP)) {
+          thread.join();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        thread.interrupt();
+      }
+    }
+
+    Throwable failure = this.failure;
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+  }
+
+  /**
+   * @return The number of events that were dropped because the queue was full.
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  @Override
+  public void sourceFetched(ResolvedArtifact artifact, Path sourceFile) {
+    enqueue(new Event(null, null, artifact, sourceFile));
+  }
+
+  /**
+   * Sets the maximum number of artifacts that are passed to {@link DependencyListener#artifactsFetched(List)} at once.
+   * This must be called before the first event is received.
+   *
+   * @param maxBatchSize The maximum batch size.
+   * @return This listener.
+   */
+  public AsyncDependencyListener withMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("The maximum batch size must be at least 1");
+    }
+
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  /**
+   * Sets what happens when an event is received and the queue is full. This must be called before the first event is
+   * received.
+   *
+   * @param overflow The overflow behavior.
+   * @return This listener.
+   */
+  public AsyncDependencyListener withOverflow(Overflow overflow) {
+    this.overflow = overflow;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of events that can be queued for the listener. This must be called before the first event
+   * is received.
+   *
+   * @param queueSize The size of the queue.
+   * @return This listener.
+   */
+  public AsyncDependencyListener withQueueSize(int queueSize) {
+    if (queueSize < 1) {
+      throw new IllegalArgumentException("The queue size must be at least 1");
+    }
+
+    this.queueSize = queueSize;
+    return this;
+  }
+
+  /**
+   * Dispatches the queued events to the listener until the stop event is taken from the queue. If the thread stops for
+   * any other reason, the reason is recorded as a failure. Either way, the thread is marked as stopped so that nothing
+   * waits for it to take an event.
+   */
+  private void dispatch() {
+    try {
+      dispatchUntilStopped();
+    } catch (InterruptedException e) {
+      fail(new IllegalStateException("The AsyncDependencyListener thread was interrupted before it was closed", e));
+    } catch (Throwable t) {
+      fail(t);
+    } finally {
+      stopped = true;
+    }
+  }
+
+  private void dispatchFetched(List<ResolvedArtifact> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    List<ResolvedArtifact> artifacts = new ArrayList<>(batch);
+    batch.clear();
+    safely(() -> listener.artifactsFetched(artifacts));
+  }
+
+  /**
+   * Dispatches the queued events to the listener until the stop event is taken from the queue. Consecutive fetched
+   * artifacts are grouped into batches.
+   */
+  private void dispatchUntilStopped() throws InterruptedException {
+    List<Event> events = new ArrayList<>();
+    List<ResolvedArtifact> batch = new ArrayList<>();
+    while (true) {
+      events.add(queue.take());
+
+      queue.drainTo(events);
+      for (Event event : events) {
+        if (event.fetched != null) {
+          batch.add(event.fetched);
+          if (batch.size() == maxBatchSize) {
+            dispatchFetched(batch);
+          }
+
+          continue;
+        }
+
+        dispatchFetched(batch);
+        if (event == STOP) {
+          return;
+        }
+
+        Event current = event;
+        if (current.published != null) {
+          safely(() -> listener.artifactPublished(current.published));
+        } else {
+          safely(() -> listener.sourceFetched(current.sourceArtifact, current.sourceFile));
+        }
+      }
+
+      dispatchFetched(batch);
+      events.clear();
+    }
+  }
+
+  private void enqueue(Event event) {
+    // The read lock keeps close() from queueing the stop event until this event is queued. The thread keeps taking
+    // events until then unless it stops early, and put gives up once it has, so holding the lock while waiting for
+    // room in the queue can't block close() forever
+    lock.readLock().lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("The AsyncDependencyListener has been closed");
+      }
+
+      if (thread == null) {
+        start();
+      }
+
+      if (stopped) {
+        throw new IllegalStateException("The AsyncDependencyListener thread has stopped", failure);
+      }
+
+      if (overflow == Overflow.DROP) {
+        if (!queue.offer(event)) {
+          dropped.incrementAndGet();
+        }
+
+        return;
+      }
+
+      if (!put(event)) {
+        throw new IllegalStateException("The AsyncDependencyListener thread has stopped", failure);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for room in the listener queue", e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private synchronized void fail(Throwable t) {
+    if (failure == null) {
+      failure = t;
+    }
+  }
+
+  /**
+   * Puts an event on the queue, waiting for room in the queue while the thread is running. Once the thread has stopped,
+   * nothing takes the events from the queue anymore, so this gives up rather than waiting forever.
+   *
+   * @param event The event.
+   * @return True if the event was queued, false if the thread stopped first.
+   */
+  private boolean put(Event event) throws InterruptedException {
+    while (!queue.offer(event, 100, TimeUnit.MILLISECONDS)) {
+      if (stopped) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private void safely(Runnable call) {
+    try {
+      call.run();
+    } catch (Throwable t) {
+      fail(t);
+    }
+  }
+
+  private synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+
+    queue = new ArrayBlockingQueue<>(queueSize);
+    thread = new Thread(this::dispatch, "savant-dependency-listener");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * What happens when an event is received and the queue is full.
+   */
+  public enum Overflow {
+    /**
+     * The caller waits until there is room in the queue.
+     */
+    BLOCK,
+
+    /**
+     * The event is dropped and counted.
+     */
+    DROP
+  }
+
+  /**
+   * An event for the listener. Only one of the artifacts is set.
+   */
+  private static class Event {
+    public final ResolvedArtifact fetched;
+
+    public final Artifact published;
+
+    public final ResolvedArtifact sourceArtifact;
+
+    public final Path sourceFile;
+
+    public Event(ResolvedArtifact fetched, Artifact published, ResolvedArtifact sourceArtifact, Path sourceFile) {
+      this.fetched = fetched;
+      this.published = published;
+      this.sourceArtifact = sourceArtifact;
+      this.sourceFile = sourceFile;
+    }
+  }
+}
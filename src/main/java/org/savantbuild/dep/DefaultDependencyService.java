@@ -17,33 +17,54 @@ package org.savantbuild.dep;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.savantbuild.dep.DependencyGraphBuilder.Order;
 import org.savantbuild.dep.DependencyService.TraversalRules.GroupTraversalRule;
 import org.savantbuild.dep.domain.Artifact;
-import org.savantbuild.dep.domain.ArtifactID;
 import org.savantbuild.dep.domain.ArtifactMetaData;
 import org.savantbuild.dep.domain.CompatibilityException;
 import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
 import org.savantbuild.dep.domain.Publication;
 import org.savantbuild.dep.domain.ReifiedArtifact;
 import org.savantbuild.dep.domain.ResolvedArtifact;
-import org.savantbuild.dep.domain.Version;
 import org.savantbuild.dep.graph.ArtifactGraph;
 import org.savantbuild.dep.graph.DependencyEdgeValue;
 import org.savantbuild.dep.graph.DependencyGraph;
 import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.dep.graph.DependencyGraphSnapshot;
 import org.savantbuild.dep.graph.ResolvedArtifactGraph;
 import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
+import org.savantbuild.dep.workflow.FetchWorkflow;
+import org.savantbuild.dep.workflow.FutureTools;
 import org.savantbuild.dep.workflow.PublishWorkflow;
 import org.savantbuild.dep.workflow.Workflow;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
@@ -64,20 +85,111 @@ import static java.util.Arrays.asList;
 public class DefaultDependencyService implements DependencyService {
   private final Output output;
 
+  private boolean backgroundSources;
+
+  private boolean failFastCompatibility;
+
+  private int fetchThreads = 1;
+
+  private Order graphOrder;
+
+  private Path graphSnapshotDirectory;
+
+  private boolean lazyExpansion;
+
+  private int reduceThreads = 1;
+
+  private int resolveThreads = 1;
+
   public DefaultDependencyService(Output output) {
     this.output = output;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The graph snapshots aren't used, since the graph is reduced while it is built.
+   */
+  @Override
+  public ReducedGraphs buildAndReduceGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception, CompatibilityException,
+      CyclicException {
+    output.debugln("Building and reducing DependencyGraph with a root of [%s]", project);
+    return runBuilder(workflow, new HashMap<>(), null, (builder) -> builder.buildAndReduce(project, dependencies));
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public DependencyGraph buildGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow)
       throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
-    output.debugln("Building DependencyGraph with a root of [%s]", project);
-    DependencyGraph graph = new DependencyGraph(project);
-    populateGraph(graph, project, dependencies, workflow, new HashSet<>());
-    return graph;
+    return buildGraph(project, dependencies, workflow, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If more than one fetch thread is configured, the graphs of the projects are built in parallel using that many
+   * threads and the AMD files of each graph are fetched serially.
+   */
+  @Override
+  public Map<ReifiedArtifact, DependencyGraph> buildGraphs(Map<ReifiedArtifact, Dependencies> projects,
+                                                          Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
+    output.debugln("Building the DependencyGraphs of [%d] projects", projects.size());
+
+    // A single builder is shared by all of the projects so that each AMD file is only fetched and parsed once
+    DependencyGraphBuilder builder = new DependencyGraphBuilder(output, workflow).withFailFast(failFastCompatibility)
+                                                                                 .withLazyExpansion(lazyExpansion)
+                                                                                 .withOrder(graphOrder != null ? graphOrder : Order.DEPTH_FIRST);
+    ExecutorService executor = fetchThreads > 1 ? Executors.newFixedThreadPool(fetchThreads) : null;
+    try {
+      Map<ReifiedArtifact, Path> snapshots = new HashMap<>();
+      Map<ReifiedArtifact, Future<DependencyGraph>> futures = new LinkedHashMap<>();
+      projects.forEach((project, dependencies) -> {
+        Path snapshot = graphSnapshotFile(project, dependencies, workflow, null);
+        DependencyGraph graph = readGraphSnapshot(snapshot);
+        if (graph != null) {
+          futures.put(project, CompletableFuture.completedFuture(graph));
+          return;
+        }
+
+        snapshots.put(project, snapshot);
+        if (executor != null) {
+          futures.put(project, executor.submit(() -> builder.build(project, dependencies)));
+        } else {
+          futures.put(project, CompletableFuture.completedFuture(builder.build(project, dependencies)));
+        }
+      });
+
+      Map<ReifiedArtifact, DependencyGraph> graphs = new LinkedHashMap<>();
+      for (Map.Entry<ReifiedArtifact, Future<DependencyGraph>> entry : futures.entrySet()) {
+        DependencyGraph graph = FutureTools.await(entry.getKey(), entry.getValue());
+        if (snapshots.containsKey(entry.getKey())) {
+          writeGraphSnapshot(graph, snapshots.get(entry.getKey()));
+        }
+
+        graphs.put(entry.getKey(), graph);
+      }
+
+      return graphs;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DependencyGraph buildPartialGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow,
+                                           TraversalRules rules)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
+    Objects.requireNonNull(rules, "The TraversalRules are required to build a partial graph");
+    return buildGraph(project, dependencies, workflow, rules);
   }
 
   /**
@@ -114,49 +226,111 @@ public class DefaultDependencyService implements DependencyService {
    * {@inheritDoc}
    */
   @Override
-  public ArtifactGraph reduce(DependencyGraph graph) throws CompatibilityException, CyclicException {
-    output.debugln("Reducing DependencyGraph with a root of [%s]", graph.root);
+  public DependencyGraph rebuildGraph(DependencyGraph previous, Dependencies oldDependencies,
+                                      Dependencies newDependencies, Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
+    output.debugln("Rebuilding DependencyGraph with a root of [%s]", previous.root);
+    if (previous.traversedGroups != null) {
+      // The artifacts below the groups that weren't expanded look like leaves, so the previous graph can't be trusted
+      output.debugln("The previous graph is a partial graph. Building the full graph from scratch");
+      return populateGraph(previous.root, newDependencies, workflow, new HashMap<>(), null);
+    }
 
-    // Traverse graph. At each node, if the node's parents haven't all been checked. Skip it.
-    // If the node's parents have all been checked, for each parent, get the version of the node for the version of the
-    // parent that was kept. Ensure all these versions are compatible. Select the highest one. Add that to the
-    // ArtifactGraph. Store the kept version. Continue.
+    if (oldDependencies.equals(newDependencies) &&
+        skipCompatibilityChecks(oldDependencies).equals(skipCompatibilityChecks(newDependencies)) &&
+        !DependencyGraphSnapshot.containsIntegrationVersions(previous)) {
+      output.debugln("The dependencies haven't changed. Reusing the previous graph");
+      return previous;
+    }
 
-    ArtifactGraph artifactGraph = new ArtifactGraph(graph.root);
-    Map<ArtifactID, ReifiedArtifact> artifacts = new HashMap<>();
-    artifacts.put(graph.root.id, graph.root);
+    // Seed the AMD with the previous graph. Everything the new dependencies still reach is reused and everything they
+    // no longer reach is simply never added to the new graph
+    Map<Artifact, ArtifactMetaData> metaData = previous.getArtifactMetaData();
+    metaData.keySet().removeIf(Artifact::isIntegrationBuild);
+    output.debugln("Reusing the AMD of [%d] artifacts from the previous graph", metaData.size());
 
-    Set<Dependency> seenAtLeastOnce = new HashSet<>();
+    return populateGraph(previous.root, newDependencies, workflow, metaData, null);
+  }
 
-    graph.traverse(new Dependency(graph.root.id), false, null, (origin, destination, edgeValue, depth, isLast) -> {
-      List<Edge<Dependency, DependencyEdgeValue>> inboundEdges = graph.getInboundEdges(destination);
-      boolean alreadyCheckedAllParents = inboundEdges.size() > 0 && inboundEdges.stream().allMatch((edge) -> artifacts.containsKey(edge.getOrigin().id));
-      if (alreadyCheckedAllParents) {
-        output.debugln("Already checked all parents so we know the versions of them at this point. Working on node [%s]", destination);
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ArtifactGraph reduce(DependencyGraph graph) throws CompatibilityException, CyclicException {
+    return reduce(graph, (Consumer<ReifiedArtifact>) null);
+  }
 
-        // Remove from seenAtLeastOnce
-        seenAtLeastOnce.remove(destination);
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ArtifactGraph reduce(DependencyGraph graph, Consumer<ReifiedArtifact> consumer)
+      throws CompatibilityException, CyclicException {
+    return runReducer((reducer) -> reducer.reduce(graph, consumer));
+  }
 
-        return checkCompatibilityAndAddToGraph(graph, artifacts, destination, inboundEdges, artifactGraph);
-      } else {
-        output.debugln("Skipping dependency [%s] for now. Not all its parents have been checked", destination);
-        seenAtLeastOnce.add(destination);
-      }
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ArtifactGraph reduce(DependencyGraph graph, List<CompatibilityException> conflicts) throws CyclicException {
+    return runReducer((reducer) -> reducer.withConflicts(conflicts).reduce(graph));
+  }
 
-      return true; // Always continue traversal
-    });
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ArtifactGraph reduce(DependencyGraph graph, ArtifactGraph previous,
+                              Collection<Edge<Dependency, DependencyEdgeValue>> changed)
+      throws CompatibilityException, CyclicException {
+    return runReducer((reducer) -> reducer.reduce(graph, previous, changed));
+  }
 
-    // Go through the seenAtLeastOnce set and determine if we should add any of the nodes to the graph
-    seenAtLeastOnce.forEach((dependency) -> {
-      List<Edge<Dependency, DependencyEdgeValue>> inboundEdges = graph.getInboundEdges(dependency);
-      checkCompatibilityAndAddToGraph(graph, artifacts, dependency, inboundEdges, artifactGraph);
-    });
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ArtifactGraph reducePartial(DependencyGraph graph, TraversalRules rules)
+      throws CompatibilityException, CyclicException {
+    if (graph.postponed.size() > 0) {
+      throw new IllegalArgumentException("The DependencyGraph was built using lazy expansion and can't be reduced for " +
+          "the TraversalRules because the dependencies of its postponed versions are unknown. Build the graph using the " +
+          "TraversalRules instead (see buildPartialGraph).");
+    }
 
-    return artifactGraph;
+    if (graph.traversedGroups != null &&
+        !rules.rules.entrySet().stream().allMatch((entry) -> isExpanded(graph, entry.getKey(), entry.getValue()))) {
+      throw new IllegalArgumentException("The DependencyGraph was built for TraversalRules that don't expand all of the " +
+          "groups of the given TraversalRules, so the dependencies of some of its artifacts are unknown. Build the graph " +
+          "using the TraversalRules instead (see buildPartialGraph).");
+    }
+
+    // Rebuild the graph from its own AMD using only the groups that are traversed. Everything is already in the graph, so
+    // the workflow is never asked for anything
+    Dependencies dependencies = new Dependencies();
+    graph.getOutboundEdges(new Dependency(graph.root.id)).forEach((edge) ->
+        dependencies.groups.computeIfAbsent(edge.getValue().type, (type) -> new DependencyGroup(type, true))
+                    .dependencies.add(new Artifact(edge.getDestination().id, edge.getValue().dependencyVersion, false))
+    );
+
+    Workflow offline = new Workflow(new FetchWorkflow(output), new PublishWorkflow());
+    DependencyGraph traversed = new DependencyGraphBuilder(output, offline).withMetaData(graph.getArtifactMetaData())
+                                                                           .withPartialTraversal(rules)
+                                                                           .build(graph.root, dependencies);
+    graph.values().stream()
+         .filter((dependency) -> dependency.skipCompatibilityCheck && traversed.contains(dependency))
+         .forEach((dependency) -> traversed.skipCompatibilityCheck(dependency.id));
+
+    return reduce(traversed);
   }
 
   /**
    * {@inheritDoc}
+   * <p>
+   * If more than one resolve thread is configured (see {@link #withResolveThreads(int)}), the artifacts and sources are
+   * downloaded in parallel and the result is the same as the serial resolve. If background sources are turned on (see
+   * {@link #withBackgroundSources(boolean)}), the sources are fetched after this returns.
    */
   @Override
   public ResolvedArtifactGraph resolve(ArtifactGraph graph, Workflow workflow, TraversalRules configuration,
@@ -166,10 +340,522 @@ public class DefaultDependencyService implements DependencyService {
 
     ResolvedArtifact root = new ResolvedArtifact(graph.root.id, graph.root.version, graph.root.licenses, null, null);
     ResolvedArtifactGraph resolvedGraph = new ResolvedArtifactGraph(root);
+    Resolution resolution;
+    if (resolveThreads > 1) {
+      ExecutorService executor = Executors.newFixedThreadPool(resolveThreads);
+      try {
+        resolution = resolveInParallel(graph, workflow, configuration, resolvedGraph, executor, listeners);
+      } finally {
+        executor.shutdownNow();
+      }
+    } else {
+      resolution = new Resolution(graph, resolvedGraph, (artifact) -> workflow.fetchArtifact(artifact).toAbsolutePath(),
+          workflow::fetchSource, backgroundSources, listeners);
+      traverseForResolve(graph, configuration, resolution::add);
+    }
+
+    if (backgroundSources) {
+      resolvedGraph.sourcesFetched = fetchSourcesInBackground(resolution, resolvedGraph, workflow, listeners);
+    }
+
+    return resolvedGraph;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The artifacts and sources are downloaded using a pool of threads that is the size of the resolve threads (see {@link
+   * #withResolveThreads(int)}) and shuts down once the graph is resolved. The graph is traversed on the calling thread
+   * to plan the downloads.
+   */
+  @Override
+  public CompletableFuture<ResolvedArtifactGraph> resolveAsync(ArtifactGraph graph, Workflow workflow,
+                                                               TraversalRules configuration,
+                                                               Consumer<ResolvedArtifact> consumer,
+                                                               DependencyListener... listeners) {
+    output.debugln("Resolving ArtifactGraph with a root of [%s] asynchronously", graph.root);
+
+    DependencyListener[] allListeners = Arrays.copyOf(listeners, listeners.length + 1);
+    allListeners[listeners.length] = new DependencyListener() {
+      @Override
+      public void artifactFetched(ResolvedArtifact artifact) {
+        consumer.accept(artifact);
+      }
+
+      @Override
+      public void artifactPublished(Artifact artifact) {
+      }
+    };
+
+    ResolvedArtifact root = new ResolvedArtifact(graph.root.id, graph.root.version, graph.root.licenses, null, null);
+    ResolvedArtifactGraph resolvedGraph = new ResolvedArtifactGraph(root);
+    ExecutorService executor = Executors.newFixedThreadPool(resolveThreads);
+    CompletableFuture<ResolvedArtifactGraph> future;
+    try {
+      future = resolveInParallelAsync(graph, workflow, configuration, resolvedGraph, executor, allListeners).thenApply((resolution) -> {
+        if (backgroundSources) {
+          resolvedGraph.sourcesFetched = fetchSourcesInBackground(resolution, resolvedGraph, workflow, listeners);
+        }
+
+        return resolvedGraph;
+      });
+    } catch (RuntimeException e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+
+    future.whenComplete((result, failure) -> executor.shutdownNow());
+    return future;
+  }
+
+  /**
+   * Turns on background source fetching. When this is on, {@link #resolve} doesn't wait for the source JARs. It returns
+   * once the artifacts have been fetched and the ResolvedArtifacts in the graph it returns don't have source files.
+   * The source JARs are then fetched in the background using a pool of threads that is the size of the resolve threads
+   * (see {@link #withResolveThreads(int)}) and shuts down once the sources have been fetched. As each source JAR is
+   * fetched, it is added to the graph (see {@link ResolvedArtifactGraph#getSourcePath}) and the listeners are notified
+   * (see {@link DependencyListener#sourceFetched}). {@link ResolvedArtifactGraph#sourcesFetched} completes once all of
+   * the sources have been fetched.
+   *
+   * @param backgroundSources True to fetch the source JARs in the background.
+   * @return This service.
+   */
+  public DefaultDependencyService withBackgroundSources(boolean backgroundSources) {
+    this.backgroundSources = backgroundSources;
+    return this;
+  }
+
+  /**
+   * Turns on fail fast compatibility checking while building DependencyGraphs. Incompatible versions of an artifact are
+   * reported as soon as both versions are in the graph instead of in {@link #reduce(DependencyGraph)}. See {@link
+   * DependencyGraphBuilder#withFailFast(boolean)} for the details.
+   *
+   * @param failFastCompatibility True to check the compatibility while the graph is built.
+   * @return This service.
+   */
+  public DefaultDependencyService withFailFastCompatibility(boolean failFastCompatibility) {
+    this.failFastCompatibility = failFastCompatibility;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads that are used to fetch the AMD files while building the DependencyGraph. When this is
+   * greater than one and no graph order has been set, the graph is populated breadth first and all of the AMD files for
+   * a single level of the graph are fetched at the same time. The edges are still added to the graph in a fixed order,
+   * so the resulting graph is the same as the one built serially.
+   *
+   * @param fetchThreads The maximum number of concurrent fetches.
+   * @return This service.
+   */
+  public DefaultDependencyService withFetchThreads(int fetchThreads) {
+    if (fetchThreads < 1) {
+      throw new IllegalArgumentException("The number of fetch threads must be at least 1");
+    }
+
+    this.fetchThreads = fetchThreads;
+    return this;
+  }
+
+  /**
+   * Sets the order that the DependencyGraph is populated in. See {@link DependencyGraphBuilder} for the details of each
+   * order. The priority order requires a Comparator, so it can only be used with a DependencyGraphBuilder directly.
+   *
+   * @param graphOrder The order or null to pick the order based on the number of fetch threads.
+   * @return This service.
+   */
+  public DefaultDependencyService withGraphOrder(Order graphOrder) {
+    if (graphOrder == Order.PRIORITY) {
+      throw new IllegalArgumentException("The priority order can only be used with a DependencyGraphBuilder");
+    }
+
+    this.graphOrder = graphOrder;
+    return this;
+  }
+
+  /**
+   * Sets the directory that DependencyGraph snapshots are stored in. When this is set, the DependencyGraph built for a
+   * project is written to a snapshot file that is named using a fingerprint of the project, its dependencies and the
+   * fetch workflow. The next time the same graph is built, it is read from the snapshot and no AMD files are fetched.
+   * <p>
+   * Integration versions can be republished at any time, so snapshots are never used for projects that declare an
+   * integration version and are never written for graphs that contain an integration version.
+   *
+   * @param graphSnapshotDirectory The snapshot directory or null to turn off snapshots.
+   * @return This service.
+   */
+  public DefaultDependencyService withGraphSnapshotDirectory(Path graphSnapshotDirectory) {
+    this.graphSnapshotDirectory = graphSnapshotDirectory;
+    return this;
+  }
+
+  /**
+   * Turns on lazy expansion while building DependencyGraphs. Older versions of an artifact are only expanded once it is
+   * clear that they are selected, so the AMD files under versions that lose are never fetched. See {@link
+   * DependencyGraphBuilder#withLazyExpansion(boolean)} for the details.
+   *
+   * @param lazyExpansion True to turn on lazy expansion.
+   * @return This service.
+   */
+  public DefaultDependencyService withLazyExpansion(boolean lazyExpansion) {
+    this.lazyExpansion = lazyExpansion;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads that are used to reduce DependencyGraphs. When this is greater than one, all of the
+   * nodes whose parents have been decided are decided at the same time using a pool of threads that only lives as long
+   * as the reduction. The result is always the same as the serial reduction. See {@link
+   * DependencyGraphReducer#withPool(ForkJoinPool)} for the details.
+   *
+   * @param reduceThreads The maximum number of threads.
+   * @return This service.
+   */
+  public DefaultDependencyService withReduceThreads(int reduceThreads) {
+    if (reduceThreads < 1) {
+      throw new IllegalArgumentException("The number of reduce threads must be at least 1");
+    }
+
+    this.reduceThreads = reduceThreads;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads that are used to download the artifacts and sources while resolving an ArtifactGraph.
+   * When this is greater than one, the artifacts to download are planned from the ArtifactGraph and TraversalRules
+   * first and then they are all downloaded at the same time using a pool of threads that only lives as long as the
+   * resolve. The ResolvedArtifactGraph and the order of the listener callbacks are the same as the serial resolve.
+   * Disallowed licenses are reported before anything is downloaded and download failures are reported for the first
+   * artifact in traversal order that failed, so the failures are deterministic.
+   *
+   * @param resolveThreads The maximum number of concurrent downloads.
+   * @return This service.
+   */
+  public DefaultDependencyService withResolveThreads(int resolveThreads) {
+    if (resolveThreads < 1) {
+      throw new IllegalArgumentException("The number of resolve threads must be at least 1");
+    }
+
+    this.resolveThreads = resolveThreads;
+    return this;
+  }
+
+  /**
+   * Builds a dependency graph or reads it from its snapshot if one was written by an earlier build.
+   *
+   * @param project      The root of the graph.
+   * @param dependencies The declared dependencies of the project.
+   * @param workflow     The workflow used to fetch the AMD files.
+   * @param rules        The TraversalRules of a partial graph or null to build the full graph.
+   * @return The dependency graph.
+   */
+  private DependencyGraph buildGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow,
+                                     TraversalRules rules) {
+    output.debugln("Building DependencyGraph with a root of [%s]", project);
+    Path snapshot = graphSnapshotFile(project, dependencies, workflow, rules);
+    DependencyGraph graph = readGraphSnapshot(snapshot);
+    if (graph != null) {
+      return graph;
+    }
+
+    graph = populateGraph(project, dependencies, workflow, new HashMap<>(), rules);
+    writeGraphSnapshot(graph, snapshot);
+    return graph;
+  }
+
+  /**
+   * Fetches the source JARs that the resolution deferred using a new pool of threads. The pool is shut down right away,
+   * so its threads exit once the last source has been fetched.
+   *
+   * @return A future that completes once all of the sources have been fetched or completes exceptionally if any of them
+   * fail.
+   */
+  private CompletableFuture<Void> fetchSourcesInBackground(Resolution resolution, ResolvedArtifactGraph resolvedGraph,
+                                                           Workflow workflow, DependencyListener... listeners) {
+    if (resolution.deferredSources.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(resolveThreads, resolution.deferredSources.size()));
+    try {
+      CompletableFuture<?>[] futures = resolution.deferredSources.stream().map((artifact) -> {
+        ResolvedArtifact resolvedArtifact = resolution.resolved.get(artifact);
+        return CompletableFuture.runAsync(() -> {
+          Path sourceFile = workflow.fetchSource(artifact);
+          resolvedGraph.addSourcePath(artifact.id, sourceFile);
+          asList(listeners).forEach((listener) -> listener.sourceFetched(resolvedArtifact, sourceFile));
+        }, executor);
+      }).toArray(CompletableFuture[]::new);
+      return CompletableFuture.allOf(futures);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Determines the snapshot file for the DependencyGraph of the given project. The name of the file is a SHA-256
+   * fingerprint of the project, its licenses, every dependency group and dependency, the fetch workflow processes and
+   * the options that change the graph that is built.
+   *
+   * @param project      The project.
+   * @param dependencies The dependencies of the project.
+   * @param workflow     The workflow used to fetch the AMD files.
+   * @param rules        The TraversalRules that the graph is built for or null for every group.
+   * @return The snapshot file or null if snapshots are turned off or can't be used for the project.
+   */
+  private Path graphSnapshotFile(ReifiedArtifact project, Dependencies dependencies, Workflow workflow,
+                                 TraversalRules rules) {
+    if (graphSnapshotDirectory == null || project.isIntegrationBuild() ||
+        dependencies.getAllArtifacts().stream().anyMatch(Artifact::isIntegrationBuild)) {
+      return null;
+    }
+
+    StringBuilder build = new StringBuilder();
+    build.append(project).append(project.licenses).append('\n');
+    dependencies.groups.forEach((type, group) -> {
+      build.append(type).append(':').append(group.export).append('\n');
+      group.dependencies.forEach((dependency) -> build.append(dependency).append(':').append(dependency.skipCompatibilityCheck).append('\n'));
+    });
+    build.append(workflow.fetchWorkflow.processes).append('\n');
+    build.append("lazyExpansion:").append(lazyExpansion).append('\n');
+    if (rules != null) {
+      // Sort the rules so that the same rules always produce the same fingerprint
+      new TreeMap<>(rules.rules).forEach((group, rule) -> build.append("rule:").append(group).append(':')
+                                                             .append(rule.transitive).append(':')
+                                                             .append(new TreeSet<>(rule.transitiveGroups)).append('\n'));
+    }
+
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(build.toString().getBytes(StandardCharsets.UTF_8));
+      StringBuilder name = new StringBuilder();
+      for (byte b : digest) {
+        name.append(String.format("%02x", b));
+      }
+
+      return graphSnapshotDirectory.resolve(name.append(".graph").toString());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Determines if everything that the given rule traverses below the given group of the root was expanded when the
+   * graph was built for its TraversalRules.
+   *
+   * @param graph The graph, which was built for a set of TraversalRules.
+   * @param type  The group of the root.
+   * @param rule  The rule for the group.
+   * @return True if the graph has all of the dependencies that the rule traverses.
+   */
+  private boolean isExpanded(DependencyGraph graph, String type, GroupTraversalRule rule) {
+    if (!graph.traversedGroups.containsKey(type)) {
+      return false;
+    }
+
+    Set<String> expanded = graph.traversedGroups.get(type);
+    if (expanded == null || !rule.transitive) {
+      return true;
+    }
+
+    return !rule.transitiveGroups.isEmpty() && expanded.containsAll(rule.transitiveGroups);
+  }
+
+  /**
+   * Populates a DependencyGraph using a DependencyGraphBuilder. If more than one fetch thread is configured, the AMD
+   * files are fetched using a pool of threads that only lives as long as the build.
+   *
+   * @param project      The root of the graph.
+   * @param dependencies The dependencies of the project.
+   * @param workflow     The workflow used to fetch the AMD files.
+   * @param metaData     The ArtifactMetaData that has already been fetched for this graph.
+   * @param rules        The TraversalRules that control the groups that are expanded or null for every group.
+   * @return The graph.
+   */
+  private DependencyGraph populateGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow,
+                                        Map<Artifact, ArtifactMetaData> metaData, TraversalRules rules)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
+    return runBuilder(workflow, metaData, rules, (builder) -> builder.build(project, dependencies));
+  }
+
+  /**
+   * Publishes a single item for the given artifact.
+   *
+   * @param artifact The artifact.
+   * @param item     The item to publish.
+   * @param file     The file to publish.
+   * @param workflow The publish workflow.
+   * @throws IOException If the publication fails.
+   */
+  private void publishItem(Artifact artifact, String item, Path file, PublishWorkflow workflow) throws IOException {
+    MD5 md5 = MD5.forPath(file);
+    File tempFile = File.createTempFile("artifact-item", "md5");
+    tempFile.deleteOnExit();
+    Path md5File = tempFile.toPath();
+    MD5.writeMD5(md5, md5File);
+    workflow.publish(artifact, item + ".md5", md5File);
+    workflow.publish(artifact, item, file);
+  }
+
+  /**
+   * Reads the DependencyGraph from the given snapshot file if it exists. A snapshot that can't be read is ignored so
+   * that the graph is built instead.
+   *
+   * @param snapshot The snapshot file or null if snapshots aren't used.
+   * @return The graph or null if there isn't a usable snapshot.
+   */
+  private DependencyGraph readGraphSnapshot(Path snapshot) {
+    if (snapshot == null || !Files.isRegularFile(snapshot)) {
+      return null;
+    }
 
-    Map<ReifiedArtifact, ResolvedArtifact> map = new HashMap<>();
-    map.put(graph.root, root);
+    try {
+      DependencyGraph graph = DependencyGraphSnapshot.read(snapshot);
+      output.debugln("Loaded DependencyGraph from the snapshot [%s]", snapshot);
+      return graph;
+    } catch (IOException e) {
+      output.debugln("Unable to read the DependencyGraph snapshot [%s]. Building the graph instead. Error is [%s]", snapshot, e);
+      return null;
+    }
+  }
+
+  /**
+   * Starts downloading the artifacts and sources that are resolved on the executor. Each artifact and source is
+   * downloaded once, regardless of the number of edges that reach it.
+   *
+   * @return The downloads keyed by the artifacts.
+   */
+  private Downloads download(List<ResolveVisit> visits, Workflow workflow, Executor executor) {
+    Downloads downloads = new Downloads();
+    for (ResolveVisit visit : visits) {
+      downloads.files.computeIfAbsent(visit.destination, (artifact) -> CompletableFuture.supplyAsync(() -> workflow.fetchArtifact(artifact).toAbsolutePath(), executor));
+      if (visit.fetchSource && !backgroundSources) {
+        downloads.sourceFiles.computeIfAbsent(visit.destination, (artifact) -> CompletableFuture.supplyAsync(() -> workflow.fetchSource(artifact), executor));
+      }
+    }
+
+    return downloads;
+  }
+
+  /**
+   * Resolves the graph by downloading the artifacts and sources in parallel. The artifacts to download are planned by
+   * traversing the graph first, which also checks the licenses, so a LicenseException is thrown before anything is
+   * downloaded. Each artifact and source is then downloaded once on the executor, regardless of the number of edges
+   * that reach it. Finally, the ResolvedArtifactGraph is assembled on the calling thread in traversal order exactly like
+   * the serial resolve. The downloads are waited on in traversal order as well, so when several downloads fail, the
+   * failure that is thrown is always the one for the first artifact in traversal order.
+   */
+  private Resolution resolveInParallel(ArtifactGraph graph, Workflow workflow, TraversalRules configuration,
+                                       ResolvedArtifactGraph resolvedGraph, Executor executor,
+                                       DependencyListener... listeners) {
+    List<ResolveVisit> visits = new ArrayList<>();
+    traverseForResolve(graph, configuration, visits::add);
+
+    Downloads downloads = download(visits, workflow, executor);
+    Resolution resolution = new Resolution(graph, resolvedGraph, (artifact) -> FutureTools.await(artifact, downloads.files.get(artifact)),
+        (artifact) -> FutureTools.await(artifact, downloads.sourceFiles.get(artifact)), backgroundSources, listeners);
+    visits.forEach(resolution::add);
+    return resolution;
+  }
+
+  /**
+   * Resolves the graph like {@link #resolveInParallel} without waiting on the downloads. The edges are chained in
+   * traversal order and each edge is added once the downloads that it needs have finished and the edge before it has
+   * been added. The edges are added by the threads that finish the downloads. A failed download fails every edge after
+   * it, so the future always fails with the failure of the first artifact in traversal order.
+   *
+   * @return A future for the Resolution once every edge has been added.
+   */
+  private CompletableFuture<Resolution> resolveInParallelAsync(ArtifactGraph graph, Workflow workflow,
+                                                               TraversalRules configuration,
+                                                               ResolvedArtifactGraph resolvedGraph, Executor executor,
+                                                               DependencyListener... listeners) {
+    List<ResolveVisit> visits = new ArrayList<>();
+    traverseForResolve(graph, configuration, visits::add);
+
+    // The downloads are complete when each edge is added, so joining them doesn't block
+    Downloads downloads = download(visits, workflow, executor);
+    Resolution resolution = new Resolution(graph, resolvedGraph, (artifact) -> downloads.files.get(artifact).join(),
+        (artifact) -> downloads.sourceFiles.get(artifact).join(), backgroundSources, listeners);
+    CompletableFuture<Void> assembled = CompletableFuture.completedFuture(null);
+    for (ResolveVisit visit : visits) {
+      CompletableFuture<Path> file = downloads.files.get(visit.destination);
+      CompletableFuture<Path> sourceFile = downloads.sourceFiles.getOrDefault(visit.destination, CompletableFuture.completedFuture(null));
+      assembled = assembled.thenCompose((ignored) -> file)
+                           .thenCompose((ignored) -> sourceFile)
+                           .thenRun(() -> resolution.add(visit));
+    }
 
+    return assembled.thenApply((ignored) -> resolution);
+  }
+
+  /**
+   * Runs a build using a new DependencyGraphBuilder that is configured by this service. If more than one fetch thread
+   * is configured, the AMD files are fetched using a pool of threads that only lives as long as the build.
+   *
+   * @param workflow The workflow used to fetch the AMD files.
+   * @param metaData The ArtifactMetaData that has already been fetched for the graph.
+   * @param rules    The TraversalRules that control the groups that are expanded or null for every group.
+   * @param build    The build to run using the builder.
+   * @return The result of the build.
+   */
+  private <T> T runBuilder(Workflow workflow, Map<Artifact, ArtifactMetaData> metaData, TraversalRules rules,
+                           Function<DependencyGraphBuilder, T> build) {
+    ExecutorService executor = fetchThreads > 1 ? Executors.newFixedThreadPool(fetchThreads) : null;
+    try {
+      Order order = graphOrder;
+      if (order == null) {
+        order = executor != null ? Order.BREADTH_FIRST : Order.DEPTH_FIRST;
+      }
+
+      return build.apply(new DependencyGraphBuilder(output, workflow).withExecutor(executor)
+                                                                     .withFailFast(failFastCompatibility)
+                                                                     .withLazyExpansion(lazyExpansion)
+                                                                     .withOrder(order)
+                                                                     .withMetaData(metaData)
+                                                                     .withPartialTraversal(rules));
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Runs a reduction using a new DependencyGraphReducer. If the reduction is done by more than one thread, the reducer
+   * is given a pool for the reduction that is shut down afterwards.
+   */
+  private ArtifactGraph runReducer(Function<DependencyGraphReducer, ArtifactGraph> reduction) {
+    DependencyGraphReducer reducer = new DependencyGraphReducer(output);
+    if (reduceThreads == 1) {
+      return reduction.apply(reducer);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(reduceThreads);
+    try {
+      return reduction.apply(reducer.withPool(pool));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Collects the skipCompatibilityCheck flags of all of the dependencies in declaration order. Artifact equality
+   * ignores this flag, so this is used to detect changes to the flags.
+   *
+   * @param dependencies The dependencies.
+   * @return The flags.
+   */
+  private List<Boolean> skipCompatibilityChecks(Dependencies dependencies) {
+    return dependencies.groups.values().stream()
+                              .flatMap((group) -> group.dependencies.stream())
+                              .map((dependency) -> dependency.skipCompatibilityCheck)
+                              .collect(Collectors.toList());
+  }
+
+  /**
+   * Traverses the ArtifactGraph using the TraversalRules and passes each edge that is resolved to the consumer. The
+   * licenses of each artifact are checked before it is passed to the consumer.
+   */
+  private void traverseForResolve(ArtifactGraph graph, TraversalRules configuration, Consumer<ResolveVisit> consumer) {
     AtomicReference<GroupTraversalRule> rootTypeResolveConfiguration = new AtomicReference<>();
 
     graph.traverse(graph.root, false, null, (origin, destination, group, depth, isLast) -> {
@@ -194,145 +880,132 @@ public class DefaultDependencyService implements DependencyService {
         throw new LicenseException(destination);
       }
 
-      Path file = workflow.fetchArtifact(destination).toAbsolutePath();
-
-      // Optionally fetch the source
-      Path sourceFile = null;
-      if (groupTraversalRule.fetchSource) {
-        sourceFile = workflow.fetchSource(destination);
-      }
-
-      // Add to the graph
-      ResolvedArtifact resolvedArtifact = new ResolvedArtifact(destination.id, destination.version, destination.licenses, file, sourceFile);
-      resolvedGraph.addEdge(map.get(origin), resolvedArtifact, group);
-      map.put(destination, resolvedArtifact);
-
-      // Call the listeners
-      asList(listeners).forEach((listener) -> listener.artifactFetched(resolvedArtifact));
+      consumer.accept(new ResolveVisit(origin, destination, group, groupTraversalRule.fetchSource));
 
       // Recurse if the configuration is set to transitive (or not set)
       return groupTraversalRule.transitive;
     });
-
-    return resolvedGraph;
   }
 
-  private boolean checkCompatibilityAndAddToGraph(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts,
-                                                  Dependency destination, List<Edge<Dependency, DependencyEdgeValue>> inboundEdges,
-                                                  ArtifactGraph artifactGraph) {
-    List<Edge<Dependency, DependencyEdgeValue>> significantInbound =
-        inboundEdges.stream()
-                    .filter((edge) -> artifacts.containsKey(edge.getOrigin().id))
-                    .filter((edge) -> edge.getValue().dependentVersion.equals(artifacts.get(edge.getOrigin().id).version))
-                    .collect(Collectors.toList());
-
-    // This is the complex part, for each inbound edge, grab the one where the origin is the correct version (based
-    // on the versions we have already kept). Then for each of those, map to the dependency version (the version of
-    // the destination node). Then get the min and max.
-    Version min = significantInbound.stream()
-                                    .map((edge) -> edge.getValue().dependencyVersion)
-                                    .min(Version::compareTo)
-                                    .orElse(null);
-    Version max = significantInbound.stream()
-                                    .map((edge) -> edge.getValue().dependencyVersion)
-                                    .max(Version::compareTo)
-                                    .orElse(null);
-
-    output.debugln("Min [%s] and max [%s]", min, max);
-
-    // This dependency is no longer used
-    if (min == null || max == null) {
-      output.debugln("NO LONGER USED");
-      return false;
+  /**
+   * Writes the DependencyGraph to the given snapshot file unless it contains integration versions. Failing to write the
+   * snapshot doesn't fail the build.
+   *
+   * @param graph    The graph.
+   * @param snapshot The snapshot file or null if snapshots aren't used.
+   */
+  private void writeGraphSnapshot(DependencyGraph graph, Path snapshot) {
+    if (snapshot == null || DependencyGraphSnapshot.containsIntegrationVersions(graph)) {
+      return;
     }
 
-    // Ensure min and max are compatible
-    if (!destination.skipCompatibilityCheck && !min.isCompatibleWith(max)) {
-      output.debugln("INCOMPATIBLE");
-      throw new CompatibilityException(graph, destination, min, max);
+    try {
+      DependencyGraphSnapshot.write(graph, snapshot);
+      output.debugln("Wrote the DependencyGraph snapshot [%s]", snapshot);
+    } catch (IOException e) {
+      output.debugln("Unable to write the DependencyGraph snapshot [%s]. Error is [%s]", snapshot, e);
     }
+  }
 
-    DependencyEdgeValue edgeValue = significantInbound.stream()
-                                                      .filter((edge) -> edge.getValue().dependencyVersion.equals(max))
-                                                      .findFirst()
-                                                      .get()
-                                                      .getValue();
-
-    // Build the artifact for this node, save it in the Map and put it in the ArtifactGraph
-    ReifiedArtifact destinationArtifact = new ReifiedArtifact(destination.id, max, edgeValue.licenses);
-    artifacts.put(destination.id, destinationArtifact);
+  /**
+   * The downloads of a parallel resolve, keyed by the artifacts.
+   */
+  private static class Downloads {
+    public final Map<ReifiedArtifact, CompletableFuture<Path>> files = new HashMap<>();
 
-    significantInbound.forEach((edge) -> {
-      ReifiedArtifact originArtifact = artifacts.get(edge.getOrigin().id);
-      artifactGraph.addEdge(originArtifact, destinationArtifact, edge.getValue().type);
-    });
-    return true;
+    public final Map<ReifiedArtifact, CompletableFuture<Path>> sourceFiles = new HashMap<>();
   }
 
   /**
-   * Recursively populates the DependencyGraph starting with the given origin and its dependencies. This fetches the
-   * ArtifactMetaData for all of the dependencies and performs a breadth first traversal of the graph. If an dependency
-   * has already been encountered and traversed, this does not traverse it again. The Set is used to track the
-   * dependencies that have already been encountered.
-   *
-   * @param graph             The Graph to populate.
-   * @param origin            The origin artifact that is dependent on the Dependencies given.
-   * @param dependencies      The list of dependencies to extract the artifacts from.
-   * @param workflow          The workflow used to fetch the AMD files.
-   * @param artifactsRecursed The set of artifacts already resolved and recursed for.
-   */
-  private void populateGraph(DependencyGraph graph, ReifiedArtifact origin, Dependencies dependencies, Workflow workflow,
-                             Set<Artifact> artifactsRecursed)
-      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
-    dependencies.groups.forEach((type, group) -> {
-      output.debugln("Loading dependency group [%s]", type);
+   * Assembles the ResolvedArtifactGraph from the edges that are resolved, in traversal order. Each artifact is fetched
+   * once and the same ResolvedArtifact is used for every edge that reaches it, so repeat visits only add the edge. The
+   * source is fetched the first time the artifact is reached by an edge whose rule fetches sources, unless the sources
+   * are deferred. In that case, the artifacts whose sources need to be fetched are collected in traversal order instead.
+   * The listeners are called each time a ResolvedArtifact is created.
+   */
+  private static class Resolution {
+    private final Function<ReifiedArtifact, Path> artifactFetcher;
 
-      for (Artifact dependency : group.dependencies) {
-        output.debugln("Loading dependency [%s] skipCompatibilityCheck=[%b]", dependency, dependency.skipCompatibilityCheck);
+    private final List<ReifiedArtifact> deferredSources = new ArrayList<>();
 
-        ArtifactMetaData amd = workflow.fetchMetaData(dependency);
+    private final boolean deferSources;
 
-        // Create an edge using nodes so that we can be explicit
-        DependencyEdgeValue edge = new DependencyEdgeValue(origin.version, dependency.version, type, amd.licenses);
-        graph.addEdge(new Dependency(origin.id), new Dependency(dependency.id), edge);
-        if (dependency.skipCompatibilityCheck) {
-          output.debugln("SKIPPING COMPATIBILITY CHECK for [%s]", dependency.id);
-          graph.skipCompatibilityCheck(dependency.id);
-        }
+    private final ResolvedArtifactGraph graph;
 
-        // If we have already recursed this artifact, skip it.
-        if (artifactsRecursed.contains(dependency)) {
-          continue;
-        }
+    private final DependencyListener[] listeners;
+
+    private final Map<ReifiedArtifact, ResolvedArtifact> resolved = new HashMap<>();
 
-        // Recurse
-        if (amd.dependencies != null) {
-          ReifiedArtifact artifact = amd.toLicensedArtifact(dependency);
-          populateGraph(graph, artifact, amd.dependencies, workflow, artifactsRecursed);
+    private final Function<ReifiedArtifact, Path> sourceFetcher;
+
+    private final Set<ReifiedArtifact> sourcesFetched = new HashSet<>();
+
+    public Resolution(ArtifactGraph artifactGraph, ResolvedArtifactGraph graph,
+                      Function<ReifiedArtifact, Path> artifactFetcher, Function<ReifiedArtifact, Path> sourceFetcher,
+                      boolean deferSources, DependencyListener... listeners) {
+      this.graph = graph;
+      this.artifactFetcher = artifactFetcher;
+      this.sourceFetcher = sourceFetcher;
+      this.deferSources = deferSources;
+      this.listeners = listeners;
+      resolved.put(artifactGraph.root, graph.root);
+    }
+
+    public void add(ResolveVisit visit) {
+      ReifiedArtifact destination = visit.destination;
+      ResolvedArtifact resolvedArtifact = resolved.get(destination);
+      boolean fetchSource = visit.fetchSource && sourcesFetched.add(destination);
+      if (fetchSource && deferSources) {
+        deferredSources.add(destination);
+        fetchSource = false;
+      }
+
+      if (resolvedArtifact == null) {
+        Path file = artifactFetcher.apply(destination);
+
+        // Optionally fetch the source
+        Path sourceFile = null;
+        if (fetchSource) {
+          sourceFile = sourceFetcher.apply(destination);
+          graph.addSourcePath(destination.id, sourceFile);
         }
 
-        // Add the artifact to the list
-        artifactsRecursed.add(dependency);
+        ResolvedArtifact created = new ResolvedArtifact(destination.id, destination.version, destination.licenses, file, sourceFile);
+        resolved.put(destination, created);
+
+        // Call the listeners
+        asList(listeners).forEach((listener) -> listener.artifactFetched(created));
+        resolvedArtifact = created;
+      } else if (fetchSource) {
+        // The artifact was first reached by an edge that didn't fetch its source. It keeps its ResolvedArtifact, so the
+        // source is only added to the graph and the listeners are told about the source rather than the artifact again
+        ResolvedArtifact existing = resolvedArtifact;
+        Path sourceFile = sourceFetcher.apply(destination);
+        graph.addSourcePath(destination.id, sourceFile);
+        asList(listeners).forEach((listener) -> listener.sourceFetched(existing, sourceFile));
       }
-    });
+
+      graph.addEdge(resolved.get(visit.origin), resolvedArtifact, visit.group);
+    }
   }
 
   /**
-   * Publishes a single item for the given artifact.
-   *
-   * @param artifact The artifact.
-   * @param item     The item to publish.
-   * @param file     The file to publish.
-   * @param workflow The publish workflow.
-   * @throws IOException If the publication fails.
+   * An edge that is resolved.
    */
-  private void publishItem(Artifact artifact, String item, Path file, PublishWorkflow workflow) throws IOException {
-    MD5 md5 = MD5.forPath(file);
-    File tempFile = File.createTempFile("artifact-item", "md5");
-    tempFile.deleteOnExit();
-    Path md5File = tempFile.toPath();
-    MD5.writeMD5(md5, md5File);
-    workflow.publish(artifact, item + ".md5", md5File);
-    workflow.publish(artifact, item, file);
+  private static class ResolveVisit {
+    public final ReifiedArtifact destination;
+
+    public final boolean fetchSource;
+
+    public final String group;
+
+    public final ReifiedArtifact origin;
+
+    public ResolveVisit(ReifiedArtifact origin, ReifiedArtifact destination, String group, boolean fetchSource) {
+      this.origin = origin;
+      this.destination = destination;
+      this.group = group;
+      this.fetchSource = fetchSource;
+    }
   }
 }
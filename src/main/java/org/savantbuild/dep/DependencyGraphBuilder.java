@@ -0,0 +1,856 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.DependencyService.ReducedGraphs;
+import org.savantbuild.dep.DependencyService.TraversalRules;
+import org.savantbuild.dep.DependencyService.TraversalRules.GroupTraversalRule;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.ArtifactMetaData;
+import org.savantbuild.dep.domain.CompatibilityException;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
+import org.savantbuild.dep.workflow.FutureTools;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.ProcessFailureException;
+import org.savantbuild.output.Output;
+import org.savantbuild.security.MD5Exception;
+import org.savantbuild.util.CyclicException;
+import org.savantbuild.util.Graph.Edge;
+
+/**
+ * Populates DependencyGraphs using an explicit work queue rather than recursion, so the stack depth doesn't grow with
+ * the depth of the graph. Each entry in the queue is an artifact whose dependencies still need to be added to the
+ * graph. The order that the queue is worked is pluggable:
+ * <ul>
+ * <li>{@link Order#DEPTH_FIRST} - The dependencies of an artifact are expanded before its siblings. This is the order
+ * that the graph has always been built in.</li>
+ * <li>{@link Order#BREADTH_FIRST} - The graph is expanded one level at a time.</li>
+ * <li>{@link Order#PRIORITY} - The artifact with the highest priority is always expanded next.</li>
+ * </ul>
+ * <p>
+ * Each step of the work queue fetches the AMD files for a batch of dependencies using {@link
+ * Workflow#fetchMetaData(List, ExecutorService, Map)}, which asks each process for all of the AMD files that the
+ * previous processes couldn't find at once. For breadth first builds the batch is an entire level of the graph and for
+ * the other orders it is all of the dependencies of the artifact being expanded. If an executor is set, the AMD files
+ * in each batch are fetched concurrently and the edges of the artifacts in the batch are prepared concurrently. The
+ * graph itself is only ever changed by the thread that builds it, which merges the edges of the batch into the graph
+ * in the order that the dependencies are declared, so the same order always produces the same graph.
+ * <p>
+ * The AMD of every artifact that is fetched is kept for the life of the builder, so an AMD file is only ever fetched
+ * once per builder. The same builder can be used to build the graphs of many projects, including from multiple threads
+ * at once. If two builds need the same AMD file at the same time, one of them fetches it and the other waits for it.
+ *
+ * @author Brian Pontarelli
+ */
+public class DependencyGraphBuilder {
+  private static final Set<String> NOT_TRANSITIVE = Collections.emptySet();
+
+  private final Map<Artifact, CompletableFuture<ArtifactMetaData>> inFlight = new ConcurrentHashMap<>();
+
+  private final Map<Artifact, ArtifactMetaData> metaData = new ConcurrentHashMap<>();
+
+  private final Output output;
+
+  private final Workflow workflow;
+
+  private ExecutorService executor;
+
+  private boolean failFast;
+
+  private boolean lazy;
+
+  private Order order = Order.DEPTH_FIRST;
+
+  private Comparator<? super ReifiedArtifact> priority;
+
+  private TraversalRules traversalRules;
+
+  public DependencyGraphBuilder(Output output, Workflow workflow) {
+    Objects.requireNonNull(output, "DependencyGraphBuilder requires an Output");
+    Objects.requireNonNull(workflow, "DependencyGraphBuilder requires a Workflow");
+    this.output = output;
+    this.workflow = workflow;
+  }
+
+  /**
+   * Builds the DependencyGraph for the given dependencies of the given project.
+   *
+   * @param project      The artifact that represents the project.
+   * @param dependencies The declared dependencies of the project.
+   * @return The dependency graph.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   * @throws CompatibilityException If fail fast is on and incompatible versions of an artifact are found.
+   */
+  public DependencyGraph build(ReifiedArtifact project, Dependencies dependencies)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception, CompatibilityException {
+    return build(project, dependencies, lazy, new KeptVersions());
+  }
+
+  /**
+   * Builds the DependencyGraph for the given dependencies of the given project and reduces it in a single pass of the
+   * work queue. This always uses lazy expansion (see {@link #withLazyExpansion(boolean)}), so only the version of each
+   * artifact that is currently winning is expanded and a postponed version is only expanded once it wins. The table of
+   * winning versions is kept up to date while the AMD files arrive by only reducing the part of the graph below the
+   * edges that were added since the table was last updated, rather than the entire graph.
+   * <p>
+   * The versions that lose are never expanded, so the graph has fewer nodes and fewer AMD files are fetched than when
+   * the graph is built eagerly and then reduced. The ArtifactGraph is the same as reducing the eagerly built graph.
+   *
+   * @param project      The artifact that represents the project.
+   * @param dependencies The declared dependencies of the project.
+   * @return The DependencyGraph, which is still useful for printing and diagnostics, and the ArtifactGraph.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   * @throws CompatibilityException If an artifact has incompatible versions.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  public ReducedGraphs buildAndReduce(ReifiedArtifact project, Dependencies dependencies)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception, CompatibilityException,
+      CyclicException {
+    DependencyGraph graph = build(project, dependencies, true, new KeptVersions());
+
+    // The table of winning versions ignores the compatibility checks, so the graph is checked once it is complete
+    return new ReducedGraphs(graph, new DependencyGraphReducer(output).reduce(graph));
+  }
+
+  /**
+   * Sets the executor that is used to fetch the AMD files and to prepare the edges of each batch concurrently.
+   *
+   * @param executor The executor or null to do everything on the calling thread.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withExecutor(ExecutorService executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Turns on fail fast compatibility checking. Whenever a step of the work queue adds an edge to a version of an artifact
+   * that isn't compatible with another version of that artifact in the graph, the artifact is checked after that step
+   * and every later step. The versions that are currently winning are updated by only reducing the part of the graph
+   * below the edges that were added since the last step (just like {@link #buildAndReduce(ReifiedArtifact,
+   * Dependencies)}) and only the artifacts with incompatible versions are checked against them.
+   * <p>
+   * The build fails with a CompatibilityException when the lowest and the highest version of an artifact that are used
+   * by the winning versions of their origins aren't compatible and the versions of both origins are final. The version
+   * of an origin is final once none of the expansions that are still queued or postponed declares a higher version of
+   * the origin or of any artifact above it in the winning graph. Until then, the next steps could upgrade the origin to
+   * a version that doesn't use the incompatible version, so the artifact is checked again after the next step.
+   * Artifacts whose compatibility checks are skipped are never reported.
+   *
+   * @param failFast True to check the compatibility while the graph is built.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withFailFast(boolean failFast) {
+    this.failFast = failFast;
+    return this;
+  }
+
+  /**
+   * Turns on lazy expansion. When an artifact is about to be expanded and a higher compatible version of the same
+   * artifact is already in the graph, the expansion is postponed because the higher version will most likely be
+   * selected when the graph is reduced. Once the work queue is empty, the graph is reduced leniently and any postponed
+   * versions that were selected are expanded. This repeats until none of the postponed versions are selected.
+   * <p>
+   * This means that the AMD files under versions that lose are never fetched. The dependencies of the postponed versions
+   * are not added to the graph, so the postponed versions are recorded in {@link DependencyGraph#postponed}. Reducing
+   * the graph produces the same ArtifactGraph as reducing the fully expanded graph.
+   *
+   * @param lazy True to turn on lazy expansion.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withLazyExpansion(boolean lazy) {
+    this.lazy = lazy;
+    return this;
+  }
+
+  /**
+   * Adds AMD that has already been fetched to the builder. The AMD files for these artifacts will not be fetched.
+   *
+   * @param metaData The ArtifactMetaData.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withMetaData(Map<Artifact, ArtifactMetaData> metaData) {
+    this.metaData.putAll(metaData);
+    return this;
+  }
+
+  /**
+   * Sets the order that the work queue is worked in. Use {@link #withPriority(Comparator)} for the priority order.
+   *
+   * @param order The order.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withOrder(Order order) {
+    Objects.requireNonNull(order, "The order is required");
+    if (order == Order.PRIORITY && priority == null) {
+      throw new IllegalArgumentException("Use withPriority to set the priority order");
+    }
+
+    this.order = order;
+    return this;
+  }
+
+  /**
+   * Builds a partial graph that only expands the dependency groups that will be resolved using the given
+   * TraversalRules. The groups of the project that don't have a rule are not added to the graph and below the project
+   * only the transitive groups of the rule are expanded. If the rule isn't transitive, the dependencies of that group
+   * are not expanded at all. This is the same traversal that {@link DependencyService#resolve(ArtifactGraph, Workflow,
+   * TraversalRules, DependencyListener...)} does, so the AMD files of the groups that are never resolved are never
+   * fetched.
+   * <p>
+   * This changes the result of the build. The versions of each artifact are only selected from the groups that are
+   * traversed. If a group that isn't traversed depends on a higher version of an artifact, that version is not part of
+   * the graph and it doesn't win, so reducing the partial graph can select lower versions than reducing the full graph.
+   * The groups that were expanded are recorded in {@link DependencyGraph#traversedGroups}.
+   *
+   * @param traversalRules The rules or null to build the full graph.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withPartialTraversal(TraversalRules traversalRules) {
+    this.traversalRules = traversalRules;
+    return this;
+  }
+
+  /**
+   * Works the queue in priority order. The artifact whose dependencies are expanded next is always the one that the
+   * given Comparator orders first. Artifacts with the same priority are expanded in the order they were encountered.
+   *
+   * @param priority The Comparator that determines the priority of the artifacts.
+   * @return This builder.
+   */
+  public DependencyGraphBuilder withPriority(Comparator<? super ReifiedArtifact> priority) {
+    Objects.requireNonNull(priority, "The priority Comparator is required");
+    this.priority = priority;
+    this.order = Order.PRIORITY;
+    return this;
+  }
+
+  private DependencyGraph build(ReifiedArtifact project, Dependencies dependencies, boolean lazy, KeptVersions kept)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception, CompatibilityException {
+    output.debugln("Building DependencyGraph with a root of [%s] using the order [%s]", project, order);
+
+    DependencyGraph graph = new DependencyGraph(project);
+    Expansion rootExpansion = new Expansion(project, dependencies, traversalRules != null ? traversalRules.rules.keySet() : null, true, 0);
+    if (traversalRules != null) {
+      graph.traversedGroups = new TreeMap<>();
+      for (String type : traversalRules.rules.keySet()) {
+        Set<String> groups = transitiveGroups(rootExpansion, type);
+        graph.traversedGroups.put(type, groups != null ? new TreeSet<>(groups) : null);
+      }
+    }
+
+    Set<Visit> artifactsRecursed = new HashSet<>();
+    Map<Artifact, Set<String>> groupsAdded = new HashMap<>();
+    Map<ArtifactID, Version> highestVersions = new HashMap<>();
+    Map<ArtifactID, Version> lowestVersions = new HashMap<>();
+    Set<ArtifactID> incompatible = new LinkedHashSet<>();
+    Map<Visit, Expansion> postponed = new LinkedHashMap<>();
+    Set<Visit> selected = new HashSet<>();
+    Queue<Expansion> queue = newQueue();
+    queue.add(rootExpansion);
+
+    long sequence = 1;
+    while (!queue.isEmpty()) {
+      int size = order == Order.BREADTH_FIRST ? queue.size() : 1;
+      List<Expansion> batch = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        Expansion expansion = queue.poll();
+        Visit visit = expansion.visit();
+        if (lazy && !selected.contains(visit) && isPostponable(expansion, highestVersions)) {
+          output.debugln("Postponing the expansion of [%s] because a higher version is known", expansion.origin);
+          postponed.put(visit, expansion);
+        } else {
+          batch.add(expansion);
+        }
+      }
+
+      Map<Artifact, RuntimeException> failures = fetch(batch);
+
+      // The buffers are merged into the graph on this thread in the batch order, so the graph is the same no matter how
+      // many threads filled them
+      List<Expansion> next = new ArrayList<>();
+      for (EdgeBuffer buffer : bufferEdges(batch)) {
+        Expansion expansion = buffer.expansion;
+        Set<String> added = groupsAdded.computeIfAbsent(expansion.visit().artifact, (key) -> new HashSet<>());
+        for (BufferedGroup group : buffer.groups) {
+          if (group.edges == null) {
+            output.debugln("Skipping dependency group [%s] because it isn't traversed", group.type);
+            continue;
+          }
+
+          output.debugln("Loading dependency group [%s]", group.type);
+
+          // An artifact can be reached with different transitive groups, but the edges of a group are only added once
+          boolean addEdges = added.add(group.type);
+          Set<String> transitiveGroups = group.transitiveGroups;
+          for (BufferedEdge edge : group.edges) {
+            Artifact dependency = edge.dependency;
+            output.debugln("Loading dependency [%s] skipCompatibilityCheck=[%b]", dependency, dependency.skipCompatibilityCheck);
+
+            ArtifactMetaData amd = edge.amd;
+            if (amd == null) {
+              throw failures.get(dependency);
+            }
+
+            if (addEdges) {
+              addEdge(graph, expansion.origin, dependency, edge.value);
+              kept.changed.add(dependency.id);
+              Version highest = highestVersions.merge(dependency.id, dependency.version, (one, two) -> one.compareTo(two) >= 0 ? one : two);
+              Version lowest = lowestVersions.merge(dependency.id, dependency.version, (one, two) -> one.compareTo(two) <= 0 ? one : two);
+              if (failFast && !lowest.isCompatibleWith(highest)) {
+                incompatible.add(dependency.id);
+              }
+            }
+
+            // If the group isn't traversed transitively or we have already recursed this artifact, skip it.
+            if (transitiveGroups == NOT_TRANSITIVE || !artifactsRecursed.add(new Visit(dependency, transitiveGroups))) {
+              continue;
+            }
+
+            if (amd.dependencies != null) {
+              next.add(new Expansion(amd.toLicensedArtifact(dependency), amd.dependencies, transitiveGroups, false, sequence++));
+            }
+          }
+        }
+      }
+
+      // The expansions that haven't been worked yet are the edges that could still change the winning versions
+      if (incompatible.size() > 0) {
+        List<Expansion> pending = new ArrayList<>(queue);
+        pending.addAll(next);
+        pending.addAll(postponed.values());
+        checkCompatibility(graph, kept, incompatible, pending);
+      }
+
+      schedule(queue, next);
+
+      // Once the queue drains, expand any of the postponed versions that are currently selected
+      if (queue.isEmpty() && postponed.size() > 0) {
+        schedule(queue, select(graph, postponed, selected, kept));
+      }
+    }
+
+    postponed.keySet().forEach((visit) -> graph.postponed.add(visit.artifact));
+    return graph;
+  }
+
+  private void addEdge(DependencyGraph graph, ReifiedArtifact origin, Artifact dependency, DependencyEdgeValue edge) {
+    // Create an edge using nodes so that we can be explicit
+    graph.addEdge(new Dependency(origin.id), new Dependency(dependency.id), edge);
+    if (dependency.skipCompatibilityCheck) {
+      output.debugln("SKIPPING COMPATIBILITY CHECK for [%s]", dependency.id);
+      graph.skipCompatibilityCheck(dependency.id);
+    }
+  }
+
+  /**
+   * Buffers the edges of each expansion in the batch. If an executor is set and the batch has more than one expansion,
+   * the buffers are filled concurrently. Filling a buffer only reads the AMD files that were fetched for the batch, so
+   * the graph is never changed by more than one thread.
+   *
+   * @param batch The batch.
+   * @return The buffers in the batch order.
+   */
+  private List<EdgeBuffer> bufferEdges(List<Expansion> batch) {
+    if (executor == null || batch.size() < 2) {
+      return batch.stream().map(this::bufferEdges).collect(Collectors.toList());
+    }
+
+    List<Future<EdgeBuffer>> futures = new ArrayList<>(batch.size());
+    batch.forEach((expansion) -> futures.add(executor.submit(() -> bufferEdges(expansion))));
+
+    List<EdgeBuffer> buffers = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      buffers.add(FutureTools.await(batch.get(i).origin, futures.get(i)));
+    }
+
+    return buffers;
+  }
+
+  private EdgeBuffer bufferEdges(Expansion expansion) {
+    EdgeBuffer buffer = new EdgeBuffer(expansion);
+    for (Map.Entry<String, DependencyGroup> entry : expansion.dependencies.groups.entrySet()) {
+      String type = entry.getKey();
+      if (!expansion.expands(type)) {
+        buffer.groups.add(new BufferedGroup(type, null, null));
+        continue;
+      }
+
+      List<BufferedEdge> edges = new ArrayList<>(entry.getValue().dependencies.size());
+      for (Artifact dependency : entry.getValue().dependencies) {
+        ArtifactMetaData amd = metaData.get(dependency);
+        DependencyEdgeValue value = amd != null ? new DependencyEdgeValue(expansion.origin.version, dependency.version, type, amd.licenses) : null;
+        edges.add(new BufferedEdge(dependency, amd, value));
+      }
+
+      buffer.groups.add(new BufferedGroup(type, transitiveGroups(expansion, type), edges));
+    }
+
+    return buffer;
+  }
+
+  /**
+   * Checks the artifacts that have incompatible versions in the graph against the versions that are currently winning.
+   * Only the edges from the winning versions of their origins are significant. If the lowest and the highest of the
+   * significant versions aren't compatible and the versions of both of their origins are final, the artifact can't be
+   * reduced.
+   *
+   * @param graph        The graph built so far.
+   * @param kept         The versions that were kept the last time the graph was reduced.
+   * @param incompatible The artifacts that have incompatible versions in the graph.
+   * @param pending      The expansions that haven't been worked yet.
+   * @throws CompatibilityException If an artifact can't be reduced.
+   */
+  private void checkCompatibility(DependencyGraph graph, KeptVersions kept, Set<ArtifactID> incompatible,
+                                  List<Expansion> pending) throws CompatibilityException {
+    output.debugln("Checking the compatibility of [%d] artifacts in the DependencyGraph built so far", incompatible.size());
+    ArtifactGraph reduced = kept.update(graph, output);
+    Map<ArtifactID, ReifiedArtifact> artifacts = new HashMap<>();
+    reduced.values().forEach((artifact) -> artifacts.put(artifact.id, artifact));
+
+    Map<ArtifactID, Version> highestPending = null;
+    for (ArtifactID id : incompatible) {
+      List<Edge<Dependency, DependencyEdgeValue>> inbound = graph.getInboundEdges(new Dependency(id));
+      Dependency destination = inbound.get(0).getDestination();
+      if (destination.skipCompatibilityCheck) {
+        continue;
+      }
+
+      Edge<Dependency, DependencyEdgeValue> min = null;
+      Edge<Dependency, DependencyEdgeValue> max = null;
+      for (Edge<Dependency, DependencyEdgeValue> edge : inbound) {
+        ReifiedArtifact origin = artifacts.get(edge.getOrigin().id);
+        if (origin == null || !edge.getValue().dependentVersion.equals(origin.version)) {
+          continue;
+        }
+
+        Version version = edge.getValue().dependencyVersion;
+        if (min == null || version.compareTo(min.getValue().dependencyVersion) < 0) {
+          min = edge;
+        }
+        if (max == null || version.compareTo(max.getValue().dependencyVersion) > 0) {
+          max = edge;
+        }
+      }
+
+      if (min == null || min.getValue().dependencyVersion.isCompatibleWith(max.getValue().dependencyVersion)) {
+        continue;
+      }
+
+      if (highestPending == null) {
+        highestPending = highestPending(pending);
+      }
+
+      ReifiedArtifact minOrigin = artifacts.get(min.getOrigin().id);
+      ReifiedArtifact maxOrigin = artifacts.get(max.getOrigin().id);
+      if (isFinal(reduced, minOrigin, highestPending) && isFinal(reduced, maxOrigin, highestPending)) {
+        Map<Version, List<ReifiedArtifact>> paths = new TreeMap<>();
+        paths.put(min.getValue().dependencyVersion, path(reduced, minOrigin));
+        paths.put(max.getValue().dependencyVersion, path(reduced, maxOrigin));
+        throw new CompatibilityException(graph, destination, min.getValue().dependencyVersion,
+            max.getValue().dependencyVersion, paths);
+      }
+
+      output.debugln("The versions of [%s] are incompatible, but the versions of their origins aren't final yet", id);
+    }
+  }
+
+  /**
+   * Fetches the AMD files for all of the dependencies in the batch that haven't been fetched yet.
+   *
+   * @param batch The batch.
+   * @return The failures keyed by the artifacts whose AMD files couldn't be fetched.
+   */
+  private Map<Artifact, RuntimeException> fetch(List<Expansion> batch) {
+    List<Artifact> artifacts = batch.stream()
+                                    .flatMap((expansion) -> expansion.dependencies.groups.values().stream()
+                                                                                         .filter((group) -> expansion.expands(group.name)))
+                                    .flatMap((group) -> group.dependencies.stream())
+                                    .filter((dependency) -> !metaData.containsKey(dependency))
+                                    .distinct()
+                                    .collect(Collectors.toList());
+    Map<Artifact, RuntimeException> failures = new HashMap<>();
+    if (artifacts.isEmpty()) {
+      return failures;
+    }
+
+    // Claim the artifacts that no other build is fetching and wait for the others
+    List<Artifact> claimed = new ArrayList<>();
+    Map<Artifact, CompletableFuture<ArtifactMetaData>> waiting = new LinkedHashMap<>();
+    for (Artifact artifact : artifacts) {
+      CompletableFuture<ArtifactMetaData> future = new CompletableFuture<>();
+      CompletableFuture<ArtifactMetaData> existing = inFlight.putIfAbsent(artifact, future);
+      if (existing != null) {
+        waiting.put(artifact, existing);
+      } else if (metaData.containsKey(artifact)) {
+        // Another build finished fetching it between the check above and the claim
+        inFlight.remove(artifact);
+        future.complete(metaData.get(artifact));
+      } else {
+        claimed.add(artifact);
+      }
+    }
+
+    if (claimed.size() > 0) {
+      output.debugln("Fetching the AMD files for [%d] dependencies", claimed.size());
+      RuntimeException error = null;
+      try {
+        metaData.putAll(workflow.fetchMetaData(claimed, executor, failures));
+      } catch (RuntimeException e) {
+        error = e;
+        throw e;
+      } finally {
+        for (Artifact artifact : claimed) {
+          CompletableFuture<ArtifactMetaData> future = inFlight.remove(artifact);
+          RuntimeException failure = error != null ? error : failures.get(artifact);
+          if (failure != null) {
+            future.completeExceptionally(failure);
+          } else {
+            future.complete(metaData.get(artifact));
+          }
+        }
+      }
+    }
+
+    waiting.forEach((artifact, future) -> {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        failures.put(artifact, e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e);
+      }
+    });
+
+    return failures;
+  }
+
+  /**
+   * Determines the highest version of each artifact that the given expansions declare.
+   */
+  private Map<ArtifactID, Version> highestPending(List<Expansion> pending) {
+    Map<ArtifactID, Version> highest = new HashMap<>();
+    for (Expansion expansion : pending) {
+      expansion.dependencies.groups.values().stream()
+                                    .filter((group) -> expansion.expands(group.name))
+                                    .flatMap((group) -> group.dependencies.stream())
+                                    .forEach((dependency) -> highest.merge(dependency.id, dependency.version, (one, two) -> one.compareTo(two) >= 0 ? one : two));
+    }
+
+    return highest;
+  }
+
+  /**
+   * Determines if the winning version of an artifact is final. It is final if none of the pending expansions declares a
+   * higher version of it or of any of the artifacts above it in the winning graph, since only a higher version of one
+   * of them can change which version of the artifact wins.
+   */
+  private boolean isFinal(ArtifactGraph reduced, ReifiedArtifact artifact, Map<ArtifactID, Version> highestPending) {
+    Set<ReifiedArtifact> visited = new HashSet<>();
+    Deque<ReifiedArtifact> queue = new ArrayDeque<>();
+    queue.add(artifact);
+    while (!queue.isEmpty()) {
+      ReifiedArtifact current = queue.poll();
+      if (current.equals(reduced.root) || !visited.add(current)) {
+        continue;
+      }
+
+      Version pending = highestPending.get(current.id);
+      if (pending != null && pending.compareTo(current.version) > 0) {
+        return false;
+      }
+
+      reduced.getInboundEdges(current).forEach((edge) -> queue.add(edge.getOrigin()));
+    }
+
+    return true;
+  }
+
+  private boolean isPostponable(Expansion expansion, Map<ArtifactID, Version> highestVersions) {
+    Version highest = highestVersions.get(expansion.origin.id);
+    return highest != null && highest.compareTo(expansion.origin.version) > 0 && expansion.origin.version.isCompatibleWith(highest);
+  }
+
+  private Queue<Expansion> newQueue() {
+    if (order == Order.PRIORITY) {
+      Comparator<Expansion> comparator = Comparator.comparing((Expansion expansion) -> expansion.origin, priority);
+      return new PriorityQueue<>(comparator.thenComparingLong((expansion) -> expansion.sequence));
+    }
+
+    return new ArrayDeque<>();
+  }
+
+  /**
+   * Determines a path from the root to the given artifact in the winning graph.
+   */
+  private List<ReifiedArtifact> path(ArtifactGraph reduced, ReifiedArtifact artifact) {
+    List<ReifiedArtifact> path = new ArrayList<>();
+    ReifiedArtifact current = artifact;
+    path.add(current);
+    while (!current.equals(reduced.root)) {
+      current = reduced.getInboundEdges(current).get(0).getOrigin();
+      path.add(current);
+    }
+
+    Collections.reverse(path);
+    return path;
+  }
+
+  private void schedule(Queue<Expansion> queue, List<Expansion> expansions) {
+    if (order == Order.DEPTH_FIRST) {
+      // Push in reverse so that the first dependency is expanded first
+      Deque<Expansion> stack = (Deque<Expansion>) queue;
+      for (int i = expansions.size() - 1; i >= 0; i--) {
+        stack.push(expansions.get(i));
+      }
+    } else {
+      queue.addAll(expansions);
+    }
+  }
+
+  /**
+   * Reduces the graph leniently and removes the postponed expansions whose versions were selected. Only the part of the
+   * graph below the edges that were added since the previous reduction is reduced again. The selected versions are
+   * added to the selected Set so that they are never postponed again.
+   *
+   * @param graph        The graph.
+   * @param postponed    The postponed expansions.
+   * @param selected     The postponed versions that have been selected so far.
+   * @param keptVersions The versions that were kept the last time the graph was reduced.
+   * @return The expansions that were selected, in the order they were postponed.
+   */
+  private List<Expansion> select(DependencyGraph graph, Map<Visit, Expansion> postponed, Set<Visit> selected,
+                                 KeptVersions keptVersions) {
+    ArtifactGraph reduced = keptVersions.update(graph, output);
+    Set<Artifact> kept = reduced.values().stream()
+                                .map((artifact) -> new Artifact(artifact.id, artifact.version, false))
+                                .collect(Collectors.toSet());
+
+    List<Expansion> expansions = new ArrayList<>();
+    Iterator<Map.Entry<Visit, Expansion>> iterator = postponed.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Visit, Expansion> entry = iterator.next();
+      if (kept.contains(entry.getKey().artifact)) {
+        output.debugln("Expanding [%s] because it was selected", entry.getKey().artifact);
+        expansions.add(entry.getValue());
+        selected.add(entry.getKey());
+        iterator.remove();
+      }
+    }
+
+    return expansions;
+  }
+
+  /**
+   * Determines the groups that are expanded below the dependencies in the given group of the given expansion. This
+   * follows the TraversalRules of the project's group, since the rule of the project's group applies to the entire
+   * subtree below it.
+   *
+   * @param expansion The expansion.
+   * @param type      The dependency group.
+   * @return The groups, null for every group or {@link #NOT_TRANSITIVE} if the dependencies aren't expanded.
+   */
+  private Set<String> transitiveGroups(Expansion expansion, String type) {
+    if (!expansion.root || traversalRules == null) {
+      return expansion.groups;
+    }
+
+    GroupTraversalRule rule = traversalRules.rules.get(type);
+    if (!rule.transitive) {
+      return NOT_TRANSITIVE;
+    }
+
+    return rule.transitiveGroups.isEmpty() ? null : rule.transitiveGroups;
+  }
+
+  /**
+   * The orders that the work queue can be worked in.
+   */
+  public enum Order {
+    BREADTH_FIRST,
+    DEPTH_FIRST,
+    PRIORITY
+  }
+
+  /**
+   * An edge that an expansion adds to the graph. The AMD and the edge value are null if the AMD file of the dependency
+   * couldn't be fetched.
+   */
+  private static class BufferedEdge {
+    public final ArtifactMetaData amd;
+
+    public final Artifact dependency;
+
+    public final DependencyEdgeValue value;
+
+    public BufferedEdge(Artifact dependency, ArtifactMetaData amd, DependencyEdgeValue value) {
+      this.dependency = dependency;
+      this.amd = amd;
+      this.value = value;
+    }
+  }
+
+  /**
+   * The edges of a dependency group of an expansion in the order the dependencies are declared. The edges are null if
+   * the group isn't traversed.
+   */
+  private static class BufferedGroup {
+    public final List<BufferedEdge> edges;
+
+    public final Set<String> transitiveGroups;
+
+    public final String type;
+
+    public BufferedGroup(String type, Set<String> transitiveGroups, List<BufferedEdge> edges) {
+      this.type = type;
+      this.transitiveGroups = transitiveGroups;
+      this.edges = edges;
+    }
+  }
+
+  /**
+   * The edges that an expansion adds to the graph, which are buffered so that the expansions of a batch can be worked
+   * on concurrently and then merged into the graph in order by a single thread.
+   */
+  private static class EdgeBuffer {
+    public final Expansion expansion;
+
+    public final List<BufferedGroup> groups = new ArrayList<>();
+
+    public EdgeBuffer(Expansion expansion) {
+      this.expansion = expansion;
+    }
+  }
+
+  /**
+   * An entry in the work queue. This is an artifact whose dependencies still need to be added to the graph.
+   */
+  private static class Expansion {
+    public final Dependencies dependencies;
+
+    public final Set<String> groups;
+
+    public final ReifiedArtifact origin;
+
+    public final boolean root;
+
+    public final long sequence;
+
+    public Expansion(ReifiedArtifact origin, Dependencies dependencies, Set<String> groups, boolean root,
+                     long sequence) {
+      this.origin = origin;
+      this.dependencies = dependencies;
+      this.groups = groups;
+      this.root = root;
+      this.sequence = sequence;
+    }
+
+    public boolean expands(String type) {
+      return groups == null || groups.contains(type);
+    }
+
+    public Visit visit() {
+      return new Visit(new Artifact(origin.id, origin.version, false), groups);
+    }
+  }
+
+  /**
+   * The versions that were kept the last time the graph was reduced leniently and the destinations of the edges that
+   * have been added to the graph since then. The graph only grows while it is built, so each update only reduces the
+   * part of the graph below the new edges and copies the rest of the previous reduction.
+   */
+  private static class KeptVersions {
+    public final Set<ArtifactID> changed = new HashSet<>();
+
+    public ArtifactGraph reduced;
+
+    public ArtifactGraph update(DependencyGraph graph, Output output) {
+      DependencyGraphReducer reducer = new DependencyGraphReducer(output).withLenient(true);
+      reduced = reduced == null ? reducer.reduce(graph) : reducer.reduceChanged(graph, reduced, changed);
+      changed.clear();
+      return reduced;
+    }
+  }
+
+  /**
+   * An artifact and the groups that are expanded below it. An artifact is expanded once for each distinct set of
+   * groups that it is reached with.
+   */
+  private static class Visit {
+    public final Artifact artifact;
+
+    public final Set<String> groups;
+
+    public Visit(Artifact artifact, Set<String> groups) {
+      this.artifact = artifact;
+      this.groups = groups;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      final Visit visit = (Visit) o;
+      return artifact.equals(visit.artifact) && Objects.equals(groups, visit.groups);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * artifact.hashCode() + Objects.hashCode(groups);
+    }
+  }
+}
@@ -0,0 +1,734 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.ReductionIndex.IndexedEdge;
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.CompatibilityException;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.CompactGraph;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.output.Output;
+import org.savantbuild.util.CyclicException;
+import org.savantbuild.util.Graph.Edge;
+
+/**
+ * Reduces DependencyGraphs to ArtifactGraphs by selecting a single version of each dependency. This is the
+ * implementation of {@link DependencyService#reduce(DependencyGraph)}.
+ * <p>
+ * The nodes are decided in topological order, so the version of every parent of a node is known when the node is
+ * decided and each node is decided exactly once. Cycles are found before any node is decided. Since a decision is never
+ * revisited, each artifact can be handed to a consumer as soon as it is decided (see {@link #reduce(DependencyGraph,
+ * Consumer)}) and the decisions that can't have changed can be copied from a previous reduction (see {@link
+ * #reduce(DependencyGraph, ArtifactGraph, Collection)}). Once every version is decided, the outbound edges of each kept
+ * artifact are added in the order of its outbound edges in the DependencyGraph, which is the order the ArtifactGraph is
+ * resolved in.
+ * <p>
+ * A lenient reducer doesn't check the compatibility of the versions and always selects the highest version. This is
+ * used while the DependencyGraph is still being built to determine which versions are currently winning. A reducer
+ * that collects its conflicts (see {@link #withConflicts(List)}) checks the compatibility, but keeps going past the
+ * incompatible versions so that all of them can be reported at once.
+ *
+ * @author Brian Pontarelli
+ */
+public class DependencyGraphReducer {
+  private final Output output;
+
+  private List<CompatibilityException> conflicts;
+
+  private boolean lenient;
+
+  private ForkJoinPool pool;
+
+  public DependencyGraphReducer(Output output) {
+    this.output = output;
+  }
+
+  /**
+   * Reduces the DependencyGraph by ensuring that each dependency only has one version. This also prunes unused
+   * dependencies and ensures there are no compatibility issues in the graph.
+   *
+   * @param graph The dependency graph.
+   * @return The reduced graph.
+   * @throws CompatibilityException If an dependency has incompatible versions and this reducer isn't lenient and doesn't
+   * collect its conflicts.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  public ArtifactGraph reduce(DependencyGraph graph) throws CompatibilityException, CyclicException {
+    return reduce(graph, null);
+  }
+
+  /**
+   * Reduces the DependencyGraph and passes each artifact to the consumer as soon as its version is final. The consumer
+   * is called on the calling thread in the reduction order, which means that an artifact is always passed to the
+   * consumer after all of the artifacts that depend on it. Every artifact that is passed to the consumer is in the
+   * returned ArtifactGraph, but the root isn't passed to the consumer.
+   * <p>
+   * If the reduction fails, the artifacts that were decided before the failure have already been passed to the
+   * consumer.
+   *
+   * @param graph    The dependency graph.
+   * @param consumer The consumer of the artifacts or null.
+   * @return The reduced graph.
+   * @throws CompatibilityException If an dependency has incompatible versions and this reducer isn't lenient.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  public ArtifactGraph reduce(DependencyGraph graph, Consumer<ReifiedArtifact> consumer)
+      throws CompatibilityException, CyclicException {
+    output.debugln("Reducing DependencyGraph with a root of [%s]", graph.root);
+
+    // Order the nodes so that every node comes after all of its parents. Then for each node, get the version of the node
+    // for the version of each parent that was kept. Ensure all these versions are compatible. Select the highest one.
+    // Store the kept version. Continue. Once every version is kept, add the edges between the kept versions.
+    Map<ArtifactID, ReifiedArtifact> artifacts = new LinkedHashMap<>();
+    artifacts.put(graph.root.id, graph.root);
+    decide(graph, artifacts, consumer);
+
+    ArtifactGraph artifactGraph = new ArtifactGraph(graph.root);
+    for (ReifiedArtifact artifact : artifacts.values()) {
+      addOutboundEdges(graph, artifacts, artifact, artifactGraph);
+    }
+
+    return artifactGraph;
+  }
+
+  /**
+   * Reduces the DependencyGraph after some of its edges have changed by only deciding the nodes that might have a
+   * different version than in the previous reduction. These are the destinations of the changed edges and all of their
+   * descendants in the graph or in the previous ArtifactGraph. Every other node only has parents whose versions
+   * haven't changed, so its version is copied from the previous ArtifactGraph. The outbound edges of the affected
+   * artifacts and of the artifacts with an edge to one of them are added in the order of the graph's edges, just like a
+   * full reduction, and the outbound edges of every other artifact are copied in their previous order.
+   * <p>
+   * Only the affected nodes are indexed and ordered, so the cost of this depends on the size of the change and the
+   * size of the previous ArtifactGraph rather than the size of the graph. The result is equal to a full reduction,
+   * including the order of the outbound edges of each artifact. If the changes might have added a cycle, the entire
+   * graph is reduced instead.
+   * <p>
+   * The previous ArtifactGraph must be the reduction of the graph before the changes and the changed edges must
+   * include every edge that was added to or removed from the graph. Changes to the compatibility checks of the nodes
+   * aren't edge changes, so the graph must be reduced from scratch when they change.
+   *
+   * @param graph    The dependency graph.
+   * @param previous The reduction of the graph before the changes.
+   * @param changed  The edges that were added to or removed from the graph since the previous reduction.
+   * @return The reduced graph.
+   * @throws CompatibilityException If one of the nodes that is decided has incompatible versions and this reducer
+   * isn't lenient.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  public ArtifactGraph reduce(DependencyGraph graph, ArtifactGraph previous,
+                              Collection<Edge<Dependency, DependencyEdgeValue>> changed)
+      throws CompatibilityException, CyclicException {
+    Set<ArtifactID> destinations = changed.stream().map((edge) -> edge.getDestination().id).collect(Collectors.toSet());
+    return reduceChanged(graph, previous, destinations);
+  }
+
+  /**
+   * Collects every incompatible dependency into the given List rather than throwing the first one. The highest version
+   * of each incompatible dependency is selected, just like a lenient reducer, so the ArtifactGraph is a best-effort
+   * reduction when there are conflicts. The conflicts are added in the reduction order and each one contains the paths
+   * from the root to its incompatible versions. This has no effect on a lenient reducer.
+   *
+   * @param conflicts The List that the conflicts are added to or null to throw the first conflict.
+   * @return This reducer.
+   */
+  public DependencyGraphReducer withConflicts(List<CompatibilityException> conflicts) {
+    this.conflicts = conflicts;
+    return this;
+  }
+
+  /**
+   * Turns the compatibility checks on or off. A lenient reducer selects the highest version of each dependency even if
+   * the versions aren't compatible.
+   *
+   * @param lenient True to skip the compatibility checks.
+   * @return This reducer.
+   */
+  public DependencyGraphReducer withLenient(boolean lenient) {
+    this.lenient = lenient;
+    return this;
+  }
+
+  /**
+   * Decides the nodes of each layer of the graph in parallel using the given pool. A layer is all of the nodes whose
+   * parents have all been decided, so the nodes of a layer don't depend on each other. The decisions of a layer are
+   * added to the table of kept versions in the reduction order after the entire layer has been decided, so the result
+   * is always the same as reducing the graph serially. If more than one node in a layer has incompatible versions, the
+   * exception for the first of them in the reduction order is thrown.
+   *
+   * @param pool The pool or null to reduce the graph on the calling thread.
+   * @return This reducer.
+   */
+  public DependencyGraphReducer withPool(ForkJoinPool pool) {
+    this.pool = pool;
+    return this;
+  }
+
+  /**
+   * Adds the edges from the kept version of an artifact to the other kept artifacts in the order of its outbound edges
+   * in the DependencyGraph. The ArtifactGraph is traversed in this order when it is resolved, so the full and the
+   * incremental reductions both add the outbound edges of each artifact this way and always have the same order.
+   */
+  private void addOutboundEdges(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts,
+                                ReifiedArtifact origin, ArtifactGraph artifactGraph) {
+    Dependency dependency = new Dependency(origin.id);
+    if (!graph.contains(dependency)) {
+      return;
+    }
+
+    for (Edge<Dependency, DependencyEdgeValue> edge : graph.getOutboundEdges(dependency)) {
+      ReifiedArtifact destination = artifacts.get(edge.getDestination().id);
+      if (destination != null && edge.getValue().dependentVersion.equals(origin.version)) {
+        artifactGraph.addEdge(origin, destination, edge.getValue().type);
+      }
+    }
+  }
+
+  /**
+   * Reduces the DependencyGraph after edges to the given destinations have been added or removed. This is the same as
+   * {@link #reduce(DependencyGraph, ArtifactGraph, Collection)} for callers that only track the destinations of the
+   * changed edges.
+   *
+   * @param graph        The dependency graph.
+   * @param previous     The reduction of the graph before the changes.
+   * @param destinations The destinations of the edges that were added to or removed from the graph.
+   * @return The reduced graph.
+   */
+  ArtifactGraph reduceChanged(DependencyGraph graph, ArtifactGraph previous, Set<ArtifactID> destinations)
+      throws CompatibilityException, CyclicException {
+    Map<ArtifactID, ReifiedArtifact> previousArtifacts = new HashMap<>();
+    previous.values().forEach((artifact) -> previousArtifacts.put(artifact.id, artifact));
+
+    Set<ArtifactID> affected = affected(graph, previous, previousArtifacts, destinations);
+    List<List<Dependency>> layers = affected.contains(graph.root.id) ? null : affectedOrder(graph, affected);
+    if (layers == null) {
+      // Only a cycle stops the affected nodes from being ordered. Reducing the entire graph determines if the cycle is
+      // reachable from the root
+      output.debugln("The changed edges might have added a cycle. Reducing the entire graph");
+      return reduce(graph, null);
+    }
+
+    output.debugln("Reducing DependencyGraph with a root of [%s] incrementally", graph.root);
+    Map<ArtifactID, ReifiedArtifact> artifacts = new LinkedHashMap<>();
+    artifacts.put(graph.root.id, graph.root);
+    copyUnaffected(artifacts, previous, affected);
+
+    List<Dependency> nodes = layers.stream().flatMap(List::stream).collect(Collectors.toList());
+    decide(graph, new ReductionIndex(graph, nodes), artifacts, layers, null);
+
+    // The outbound edges of an artifact only change if it has an edge to an affected node, so the others are copied
+    Set<ArtifactID> rebuilt = rebuiltOrigins(graph, previous, previousArtifacts, affected);
+    ArtifactGraph artifactGraph = new ArtifactGraph(graph.root);
+    for (ReifiedArtifact artifact : artifacts.values()) {
+      if (rebuilt.contains(artifact.id)) {
+        addOutboundEdges(graph, artifacts, artifact, artifactGraph);
+      } else if (previous.contains(artifact)) {
+        previous.getOutboundEdges(artifact)
+                .forEach((edge) -> artifactGraph.addEdge(artifact, edge.getDestination(), edge.getValue()));
+      }
+    }
+
+    return artifactGraph;
+  }
+
+  /**
+   * Determines the nodes whose versions might have changed because of the changed edges. These are the destinations of
+   * the changed edges and everything below them in either the graph or the previous ArtifactGraph, since a removed edge
+   * might have been the only path to part of the previous ArtifactGraph.
+   */
+  private Set<ArtifactID> affected(DependencyGraph graph, ArtifactGraph previous,
+                                   Map<ArtifactID, ReifiedArtifact> previousArtifacts, Set<ArtifactID> destinations) {
+    Set<ArtifactID> affected = new LinkedHashSet<>(destinations);
+    Deque<ArtifactID> stack = new ArrayDeque<>(destinations);
+
+    while (!stack.isEmpty()) {
+      ArtifactID id = stack.pop();
+      Dependency dependency = new Dependency(id);
+      if (graph.contains(dependency)) {
+        for (Edge<Dependency, DependencyEdgeValue> edge : graph.getOutboundEdges(dependency)) {
+          if (affected.add(edge.getDestination().id)) {
+            stack.push(edge.getDestination().id);
+          }
+        }
+      }
+
+      ReifiedArtifact artifact = previousArtifacts.get(id);
+      if (artifact != null) {
+        for (Edge<ReifiedArtifact, String> edge : previous.getOutboundEdges(artifact)) {
+          if (affected.add(edge.getDestination().id)) {
+            stack.push(edge.getDestination().id);
+          }
+        }
+      }
+    }
+
+    output.debugln("The changed edges affect [%d] nodes", affected.size());
+    return affected;
+  }
+
+  /**
+   * Orders the affected nodes so that every node comes after all of its affected parents (Kahn's algorithm). The
+   * children of an affected node are always affected, so this only follows the edges between the affected nodes and
+   * never visits the rest of the graph. The parents that aren't affected are kept from the previous ArtifactGraph
+   * before any node is decided.
+   *
+   * @param graph    The graph.
+   * @param affected The affected nodes, which doesn't include the root.
+   * @return The affected nodes that are in the graph in layers or null if some of them are part of a cycle.
+   */
+  private List<List<Dependency>> affectedOrder(DependencyGraph graph, Set<ArtifactID> affected) {
+    Map<ArtifactID, Integer> pending = new HashMap<>();
+    List<Dependency> ready = new ArrayList<>();
+    for (ArtifactID id : affected) {
+      Dependency dependency = new Dependency(id);
+      if (!graph.contains(dependency)) {
+        continue;
+      }
+
+      // The destination of an inbound edge is the node in the graph, which has the compatibility check
+      List<Edge<Dependency, DependencyEdgeValue>> inbound = graph.getInboundEdges(dependency);
+      if (!inbound.isEmpty()) {
+        dependency = inbound.get(0).getDestination();
+      }
+
+      int parents = (int) inbound.stream()
+                                 .map((edge) -> edge.getOrigin().id)
+                                 .filter(affected::contains)
+                                 .distinct()
+                                 .count();
+      pending.put(id, parents);
+      if (parents == 0) {
+        ready.add(dependency);
+      }
+    }
+
+    List<List<Dependency>> layers = new ArrayList<>();
+    int ordered = 0;
+    while (!ready.isEmpty()) {
+      layers.add(ready);
+      ordered += ready.size();
+
+      List<Dependency> layer = new ArrayList<>();
+      for (Dependency node : ready) {
+        graph.getOutboundEdges(node).stream().map(Edge::getDestination).distinct().forEach((destination) -> {
+          if (pending.merge(destination.id, -1, Integer::sum) == 0) {
+            layer.add(destination);
+          }
+        });
+      }
+
+      ready = layer;
+    }
+
+    return ordered == pending.size() ? layers : null;
+  }
+
+  /**
+   * Keeps the artifacts of the previous ArtifactGraph that aren't affected by the changed edges. The parents of an
+   * artifact that isn't affected are never affected, so everything above the affected nodes is kept before any of them
+   * are decided. The artifacts are visited breadth first from the root.
+   */
+  private void copyUnaffected(Map<ArtifactID, ReifiedArtifact> artifacts, ArtifactGraph previous,
+                              Set<ArtifactID> affected) {
+    if (!previous.contains(previous.root)) {
+      return;
+    }
+
+    Deque<ReifiedArtifact> queue = new ArrayDeque<>();
+    queue.add(previous.root);
+    while (!queue.isEmpty()) {
+      ReifiedArtifact origin = queue.poll();
+      for (Edge<ReifiedArtifact, String> edge : previous.getOutboundEdges(origin)) {
+        ReifiedArtifact destination = edge.getDestination();
+        if (!affected.contains(destination.id) && artifacts.putIfAbsent(destination.id, destination) == null) {
+          queue.add(destination);
+        }
+      }
+    }
+  }
+
+  /**
+   * Orders every node that is reachable from the root and decides them all.
+   */
+  private void decide(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts,
+                      Consumer<ReifiedArtifact> consumer) throws CyclicException {
+    // The frozen graph is only needed to order and index the nodes, so it is dropped before the edges are added
+    CompactGraph<Dependency, DependencyEdgeValue> compact = graph.freeze();
+    List<List<Dependency>> layers = reductionOrder(graph, compact);
+    decide(graph, new ReductionIndex(compact), artifacts, layers, consumer);
+  }
+
+  /**
+   * Decides the nodes of each layer in order and keeps the selected versions in the Map of artifacts, which keeps them
+   * in the order they were decided.
+   */
+  private void decide(DependencyGraph graph, ReductionIndex index, Map<ArtifactID, ReifiedArtifact> artifacts,
+                      List<List<Dependency>> layers, Consumer<ReifiedArtifact> consumer) {
+    List<IndexedEdge> significantInbound = new ArrayList<>();
+    for (List<Dependency> layer : layers) {
+      if (pool != null && layer.size() > 1) {
+        reduceInParallel(graph, index, artifacts, layer, consumer);
+        continue;
+      }
+
+      for (Dependency dependency : layer) {
+        output.debugln("Working on node [%s]", dependency);
+        ReifiedArtifact artifact = selectVersion(graph, index, artifacts, dependency, significantInbound, conflicts);
+        if (artifact != null) {
+          keep(artifacts, artifact, consumer);
+        }
+      }
+    }
+  }
+
+  private void keep(Map<ArtifactID, ReifiedArtifact> artifacts, ReifiedArtifact artifact,
+                    Consumer<ReifiedArtifact> consumer) {
+    artifacts.put(artifact.id, artifact);
+    if (consumer != null) {
+      consumer.accept(artifact);
+    }
+  }
+
+  /**
+   * Determines a path from the root to an artifact that depends on each version of an incompatible dependency. The
+   * origins of the significant edges have already been kept, so the path follows the first significant inbound edge of
+   * each artifact (in the order the edges were added to the graph) back up to the root.
+   */
+  private Map<Version, List<ReifiedArtifact>> paths(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts,
+                                                    List<IndexedEdge> significantInbound) {
+    Map<Version, List<ReifiedArtifact>> paths = new TreeMap<>();
+    for (IndexedEdge edge : significantInbound) {
+      if (paths.containsKey(edge.value.dependencyVersion)) {
+        continue;
+      }
+
+      List<ReifiedArtifact> path = new ArrayList<>();
+      ReifiedArtifact current = artifacts.get(edge.origin);
+      while (current != null) {
+        path.add(current);
+        current = current.id.equals(graph.root.id) ? null : parent(graph, artifacts, current);
+      }
+
+      Collections.reverse(path);
+      paths.put(edge.value.dependencyVersion, path);
+    }
+
+    return paths;
+  }
+
+  /**
+   * Finds the origin of the first significant inbound edge of a kept artifact.
+   */
+  private ReifiedArtifact parent(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts,
+                                 ReifiedArtifact artifact) {
+    for (Edge<Dependency, DependencyEdgeValue> edge : graph.getInboundEdges(new Dependency(artifact.id))) {
+      ReifiedArtifact origin = artifacts.get(edge.getOrigin().id);
+      if (origin != null && edge.getValue().dependentVersion.equals(origin.version)) {
+        return origin;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Determines the artifacts whose outbound edges have to be rebuilt after the changes. These are the affected nodes
+   * and the origins of the edges to the affected nodes in either the graph or the previous ArtifactGraph. The outbound
+   * edges of every other artifact are the same as in the previous ArtifactGraph.
+   */
+  private Set<ArtifactID> rebuiltOrigins(DependencyGraph graph, ArtifactGraph previous,
+                                         Map<ArtifactID, ReifiedArtifact> previousArtifacts, Set<ArtifactID> affected) {
+    Set<ArtifactID> rebuilt = new HashSet<>(affected);
+    for (ArtifactID id : affected) {
+      Dependency dependency = new Dependency(id);
+      if (graph.contains(dependency)) {
+        graph.getInboundEdges(dependency).forEach((edge) -> rebuilt.add(edge.getOrigin().id));
+      }
+
+      ReifiedArtifact artifact = previousArtifacts.get(id);
+      if (artifact != null) {
+        previous.getInboundEdges(artifact).forEach((edge) -> rebuilt.add(edge.getOrigin().id));
+      }
+    }
+
+    return rebuilt;
+  }
+
+  private void reduceInParallel(DependencyGraph graph, ReductionIndex index, Map<ArtifactID, ReifiedArtifact> artifacts,
+                                List<Dependency> layer, Consumer<ReifiedArtifact> consumer) {
+    output.debugln("Deciding a layer of [%d] nodes in parallel", layer.size());
+    List<Callable<Decision>> tasks = new ArrayList<>(layer.size());
+    for (Dependency dependency : layer) {
+      tasks.add(() -> {
+        List<IndexedEdge> significantInbound = new ArrayList<>();
+        List<CompatibilityException> taskConflicts = conflicts != null ? new ArrayList<>(0) : null;
+        ReifiedArtifact artifact = selectVersion(graph, index, artifacts, dependency, significantInbound, taskConflicts);
+        return new Decision(artifact, taskConflicts);
+      });
+    }
+
+    for (Future<Decision> future : pool.invokeAll(tasks)) {
+      Decision decision;
+      try {
+        decision = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while reducing the DependencyGraph", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+
+        throw new IllegalStateException(cause);
+      }
+
+      if (decision.conflicts != null) {
+        conflicts.addAll(decision.conflicts);
+      }
+
+      if (decision.artifact != null) {
+        keep(artifacts, decision.artifact, consumer);
+      }
+    }
+  }
+
+  /**
+   * Orders the nodes that are reachable from the root so that every node comes after all of its parents (Kahn's
+   * algorithm). Each node has a counter of the parents that haven't been ordered yet and it is ordered as soon as the
+   * counter reaches zero. This means that every node is decided exactly once during the reduction and that a cycle is
+   * found before any node is decided. This only reads the int arrays of the frozen graph.
+   * <p>
+   * Every edge is followed regardless of its versions, so a node below a version that is pruned is still ordered after
+   * it. The pruned version simply isn't kept, so its edges aren't significant.
+   *
+   * @param graph   The graph.
+   * @param compact The frozen graph.
+   * @return The nodes in reduction order, not including the root. Each layer only contains nodes whose parents are all
+   * in the previous layers.
+   * @throws CyclicException If there is a cycle in the part of the graph that is reachable from the root.
+   */
+  private List<List<Dependency>> reductionOrder(DependencyGraph graph,
+                                                CompactGraph<Dependency, DependencyEdgeValue> compact)
+      throws CyclicException {
+    int root = compact.indexOf(new Dependency(graph.root.id));
+    if (root < 0) {
+      return Collections.emptyList();
+    }
+
+    int size = compact.size();
+    boolean[] reachable = new boolean[size];
+    int[] stack = new int[size];
+    int top = 0;
+    int reachableCount = 1;
+    reachable[root] = true;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      for (int i = 0; i < compact.outboundCount(node); i++) {
+        int destination = compact.destination(compact.outboundEdge(node, i));
+        if (!reachable[destination]) {
+          reachable[destination] = true;
+          stack[top++] = destination;
+          reachableCount++;
+        }
+      }
+    }
+
+    for (int i = 0; i < compact.inboundCount(root); i++) {
+      if (reachable[compact.origin(compact.inboundEdge(root, i))]) {
+        throw new CyclicException("The DependencyGraph has a cycle in it that includes the root [" + graph.root + "]");
+      }
+    }
+
+    // Count the distinct parents of each node. The stamp is the last node that counted an origin or destination, which
+    // skips the other edges between the same two nodes
+    int[] pending = new int[size];
+    int[] stamp = new int[size];
+    Arrays.fill(stamp, -1);
+    for (int node = 0; node < size; node++) {
+      if (!reachable[node] || node == root) {
+        continue;
+      }
+
+      for (int i = 0; i < compact.inboundCount(node); i++) {
+        int origin = compact.origin(compact.inboundEdge(node, i));
+        if (reachable[origin] && stamp[origin] != node) {
+          stamp[origin] = node;
+          pending[node]++;
+        }
+      }
+    }
+
+    Arrays.fill(stamp, -1);
+    List<List<Dependency>> layers = new ArrayList<>();
+    List<Integer> ready = Collections.singletonList(root);
+    int ordered = 0;
+    while (!ready.isEmpty()) {
+      List<Integer> layer = new ArrayList<>();
+      for (int node : ready) {
+        for (int i = 0; i < compact.outboundCount(node); i++) {
+          int destination = compact.destination(compact.outboundEdge(node, i));
+          if (stamp[destination] != node) {
+            stamp[destination] = node;
+            if (--pending[destination] == 0) {
+              layer.add(destination);
+            }
+          }
+        }
+      }
+
+      if (layer.size() > 0) {
+        layers.add(layer.stream().map(compact::node).collect(Collectors.toList()));
+        ordered += layer.size();
+      }
+
+      ready = layer;
+    }
+
+    if (ordered != reachableCount - 1) {
+      List<Dependency> cycle = new ArrayList<>();
+      for (int node = 0; node < size; node++) {
+        if (reachable[node] && pending[node] > 0) {
+          cycle.add(compact.node(node));
+        }
+      }
+
+      throw new CyclicException("The DependencyGraph has a cycle in it between the dependencies " + cycle);
+    }
+
+    return layers;
+  }
+
+  /**
+   * Selects the version of the destination from the edges of the kept versions of its origins and ensures the versions
+   * are compatible. The significant edges, min and max are all determined in a single pass over the indexed edges of
+   * the kept origins. This only reads the kept versions of the origins, so the nodes of a layer can be decided at the
+   * same time.
+   *
+   * @param significantInbound A List that is filled with the significant edges in the order they were added to the
+   *                           graph. It is reused so that one isn't allocated for each node.
+   * @param conflicts          The List that an incompatible destination is added to or null to throw it.
+   * @return The selected artifact or null if the destination is no longer used.
+   */
+  private ReifiedArtifact selectVersion(DependencyGraph graph, ReductionIndex index,
+                                        Map<ArtifactID, ReifiedArtifact> artifacts, Dependency destination,
+                                        List<IndexedEdge> significantInbound,
+                                        List<CompatibilityException> conflicts) {
+    // This is the complex part, for each inbound edge, grab the one where the origin is the correct version (based
+    // on the versions we have already kept). Then for each of those, map to the dependency version (the version of
+    // the destination node). Then get the min and max.
+    significantInbound.clear();
+    boolean ordered = true;
+    Version min = null;
+    Version max = null;
+    IndexedEdge maxEdge = null;
+    for (ArtifactID origin : index.origins(destination)) {
+      ReifiedArtifact originArtifact = artifacts.get(origin);
+      if (originArtifact == null) {
+        continue;
+      }
+
+      for (IndexedEdge edge : index.edges(destination, origin, originArtifact.version)) {
+        ordered &= significantInbound.isEmpty() || significantInbound.get(significantInbound.size() - 1).ordinal < edge.ordinal;
+        significantInbound.add(edge);
+
+        // The first edge with the max version in the order the edges were added supplies the licenses
+        Version version = edge.value.dependencyVersion;
+        if (min == null || version.compareTo(min) < 0) {
+          min = version;
+        }
+
+        int comparison = max == null ? 1 : version.compareTo(max);
+        if (comparison > 0 || (comparison == 0 && edge.ordinal < maxEdge.ordinal)) {
+          max = version;
+          maxEdge = edge;
+        }
+      }
+    }
+
+    output.debugln("Min [%s] and max [%s]", min, max);
+
+    // This dependency is no longer used
+    if (min == null || max == null) {
+      output.debugln("NO LONGER USED");
+      return null;
+    }
+
+    if (!ordered) {
+      significantInbound.sort((one, two) -> Integer.compare(one.ordinal, two.ordinal));
+    }
+
+    // Ensure min and max are compatible
+    if (!destination.skipCompatibilityCheck && !min.isCompatibleWith(max)) {
+      output.debugln("INCOMPATIBLE");
+      if (!lenient) {
+        CompatibilityException exception = new CompatibilityException(graph, destination, min, max,
+            paths(graph, artifacts, significantInbound));
+        if (conflicts == null) {
+          throw exception;
+        }
+
+        conflicts.add(exception);
+      }
+    }
+
+    // Build the artifact for this node
+    return new ReifiedArtifact(destination.id, max, maxEdge.value.licenses);
+  }
+
+  /**
+   * The version that was selected for a node and the conflicts that were collected while selecting it.
+   */
+  private static class Decision {
+    public final ReifiedArtifact artifact;
+
+    public final List<CompatibilityException> conflicts;
+
+    public Decision(ReifiedArtifact artifact, List<CompatibilityException> conflicts) {
+      this.artifact = artifact;
+      this.conflicts = conflicts;
+    }
+  }
+}
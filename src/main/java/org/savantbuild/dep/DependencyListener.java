@@ -15,6 +15,9 @@
  */
 package org.savantbuild.dep;
 
+import java.nio.file.Path;
+import java.util.List;
+
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.ResolvedArtifact;
 
@@ -31,10 +34,32 @@ public interface DependencyListener {
    */
   void artifactFetched(ResolvedArtifact artifact);
 
+  /**
+   * Handle when a batch of artifacts is fetched. This is only called by the {@link AsyncDependencyListener}, which
+   * groups the artifacts that are fetched while the listener is busy. By default, this calls {@link
+   * #artifactFetched(ResolvedArtifact)} for each artifact in order.
+   *
+   * @param artifacts The artifacts fetched in the order they were fetched.
+   */
+  default void artifactsFetched(List<ResolvedArtifact> artifacts) {
+    artifacts.forEach(this::artifactFetched);
+  }
+
   /**
    * Handle when an artifact is published by a mediator.
    *
    * @param artifact The artifact being published.
    */
   void artifactPublished(Artifact artifact);
+
+  /**
+   * Handle when the source JAR of an artifact is fetched after the artifact was resolved. This happens when the sources
+   * are fetched in the background or when the artifact is reached again by an edge that fetches its source. This can be
+   * called from the threads that fetch the sources, so it must be thread safe. This does nothing by default.
+   *
+   * @param artifact   The artifact.
+   * @param sourceFile The Path of the source JAR or null if the artifact doesn't have one.
+   */
+  default void sourceFetched(ResolvedArtifact artifact, Path sourceFile) {
+  }
 }
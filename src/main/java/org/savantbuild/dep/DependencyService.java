@@ -19,16 +19,22 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.savantbuild.dep.domain.CompatibilityException;
 import org.savantbuild.dep.domain.Dependencies;
 import org.savantbuild.dep.domain.License;
 import org.savantbuild.dep.domain.Publication;
 import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.ResolvedArtifact;
 import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
 import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
 import org.savantbuild.dep.graph.ResolvedArtifactGraph;
 import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
@@ -37,6 +43,7 @@ import org.savantbuild.dep.workflow.Workflow;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.security.MD5Exception;
 import org.savantbuild.util.CyclicException;
+import org.savantbuild.util.Graph.Edge;
 
 /**
  * <p>
@@ -52,6 +59,27 @@ import org.savantbuild.util.CyclicException;
  * @author Brian Pontarelli
  */
 public interface DependencyService {
+  /**
+   * Builds a dependency graph for the given dependencies of the given project and reduces it while it is built. Only
+   * the version of each artifact that is currently winning is expanded. A version that was passed over is expanded if
+   * it wins once more of the graph is known. The versions that never win are never expanded, so their AMD files are
+   * never fetched. The ArtifactGraph is the same as reducing the graph returned by {@link #buildGraph(ReifiedArtifact,
+   * Dependencies, Workflow)}.
+   *
+   * @param project      The artifact that represents the project.
+   * @param dependencies The declared dependencies of the project.
+   * @param workflow     The workflow to use for downloading and caching the AMD files.
+   * @return The dependency graph and the reduced graph.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   * @throws CompatibilityException If an dependency has incompatible versions.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  ReducedGraphs buildAndReduceGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception, CompatibilityException,
+      CyclicException;
+
   /**
    * Builds a dependency graph for the given dependencies of the given project.
    *
@@ -66,6 +94,47 @@ public interface DependencyService {
   DependencyGraph buildGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow)
       throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception;
 
+  /**
+   * Builds the dependency graphs for many projects at once. This is the same as calling {@link
+   * #buildGraph(ReifiedArtifact, Dependencies, Workflow)} for each project, except that the AMD files are shared by all
+   * of the projects. Each distinct AMD file is only fetched and parsed once, no matter how many of the projects depend
+   * on it.
+   *
+   * @param projects The artifacts that represent the projects mapped to the declared dependencies of each project.
+   * @param workflow The workflow to use for downloading and caching the AMD files.
+   * @return The dependency graphs in the same order as the projects.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   */
+  Map<ReifiedArtifact, DependencyGraph> buildGraphs(Map<ReifiedArtifact, Dependencies> projects, Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception;
+
+  /**
+   * Builds a partial dependency graph that only contains the dependency groups that will be resolved using the given
+   * TraversalRules. The groups of the project without a rule and the groups below the project that aren't transitive
+   * groups of the rule are never expanded, so their AMD files are never fetched.
+   * <p>
+   * This is not a drop-in replacement for {@link #buildGraph(ReifiedArtifact, Dependencies, Workflow)}. The versions
+   * of each artifact are only selected from the groups that will be resolved, so a group that isn't resolved (such as
+   * the test group) can't upgrade the version of an artifact that is resolved. Reducing the partial graph can
+   * therefore select lower versions than reducing the full graph and resolving it with the same TraversalRules. Use
+   * {@link #buildGraph(ReifiedArtifact, Dependencies, Workflow)} if the versions must be the same as the versions of
+   * the full build.
+   *
+   * @param project      The artifact that represents the project.
+   * @param dependencies The declared dependencies of the project.
+   * @param workflow     The workflow to use for downloading and caching the AMD files.
+   * @param rules        The traversal rules that will be used to resolve the graph.
+   * @return The partial dependency graph.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   */
+  DependencyGraph buildPartialGraph(ReifiedArtifact project, Dependencies dependencies, Workflow workflow,
+                                    TraversalRules rules)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception;
+
   /**
    * Publishes the given Publication (artifact, meta-data, source file, etc) with the given workflow.
    *
@@ -75,6 +144,28 @@ public interface DependencyService {
    */
   void publish(Publication publication, PublishWorkflow workflow) throws PublishException;
 
+  /**
+   * Rebuilds a dependency graph after the declared dependencies of the project have changed. The AMD of the release
+   * versions in the previous graph is reused, so only the AMD files for the versions that were added by the change are
+   * fetched. Dependencies that are no longer reachable from the project are not part of the new graph. Integration
+   * versions can be republished at any time, so their AMD files are always fetched again.
+   * <p>
+   * If the previous graph is a partial graph (see {@link DependencyGraph#traversedGroups}), the dependencies of the
+   * groups it didn't expand are unknown, so none of it is reused and the full graph is built from scratch.
+   *
+   * @param previous        The dependency graph that was built for the old dependencies.
+   * @param oldDependencies The old declared dependencies of the project.
+   * @param newDependencies The new declared dependencies of the project.
+   * @param workflow        The workflow to use for downloading and caching the AMD files.
+   * @return The dependency graph.
+   * @throws ArtifactMetaDataMissingException If any artifacts AMD files could not be downloaded or found locally.
+   * @throws ProcessFailureException If a workflow process failed while fetching the meta-data.
+   * @throws MD5Exception If any MD5 files didn't match the AMD file when downloading.
+   */
+  DependencyGraph rebuildGraph(DependencyGraph previous, Dependencies oldDependencies, Dependencies newDependencies,
+                               Workflow workflow)
+      throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception;
+
   /**
    * Reduces the DependencyGraph by ensuring that each dependency only has one version. This also prunes unused
    * dependencies and ensures there are no compatibility issues in the graph.
@@ -86,6 +177,72 @@ public interface DependencyService {
    */
   ArtifactGraph reduce(DependencyGraph graph) throws CompatibilityException, CyclicException;
 
+  /**
+   * Reduces the DependencyGraph and passes each artifact to the consumer as soon as its version is final, which allows
+   * the artifacts to be fetched while the rest of the graph is still being reduced. The consumer is called on the
+   * calling thread and each artifact is passed to it after all of the artifacts that depend on it. Every artifact that
+   * is passed to the consumer is in the returned ArtifactGraph.
+   *
+   * @param graph    The dependency graph.
+   * @param consumer The consumer of the artifacts.
+   * @return The reduced graph.
+   * @throws CompatibilityException If an dependency has incompatible versions. The artifacts that were decided before
+   * the incompatible dependency have already been passed to the consumer.
+   * @throws CyclicException If the graph has a cycle in it. Nothing is passed to the consumer in this case.
+   */
+  ArtifactGraph reduce(DependencyGraph graph, Consumer<ReifiedArtifact> consumer)
+      throws CompatibilityException, CyclicException;
+
+  /**
+   * Reduces the DependencyGraph without stopping at incompatible versions. Every incompatible dependency is added to
+   * the given List along with the paths from the root to its versions and the highest version of it is selected. This
+   * allows all of the conflicts in a graph to be reported at once rather than one per reduction.
+   *
+   * @param graph     The dependency graph.
+   * @param conflicts The List that the incompatible dependencies are added to.
+   * @return The reduced graph, which is only a best-effort reduction if any conflicts were added to the List.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  ArtifactGraph reduce(DependencyGraph graph, List<CompatibilityException> conflicts) throws CyclicException;
+
+  /**
+   * Reduces the DependencyGraph after some of its edges have changed. Only the destinations of the changed edges and
+   * their descendants are decided again. The version and edges of every other artifact are copied from the previous
+   * ArtifactGraph.
+   *
+   * @param graph    The dependency graph.
+   * @param previous The reduction of the graph before its edges changed.
+   * @param changed  Every edge that was added to or removed from the graph since the previous reduction.
+   * @return The reduced graph.
+   * @throws CompatibilityException If an dependency that is decided again has incompatible versions.
+   * @throws CyclicException If the graph has a cycle in it.
+   */
+  ArtifactGraph reduce(DependencyGraph graph, ArtifactGraph previous,
+                       Collection<Edge<Dependency, DependencyEdgeValue>> changed)
+      throws CompatibilityException, CyclicException;
+
+  /**
+   * Reduces the DependencyGraph using only the dependency groups that will be resolved using the given TraversalRules.
+   * This produces the same ArtifactGraph as reducing the partial graph built by {@link
+   * #buildPartialGraph(ReifiedArtifact, Dependencies, Workflow, TraversalRules)}.
+   * <p>
+   * This is not a drop-in replacement for {@link #reduce(DependencyGraph)}. The versions of each artifact are only
+   * selected from the groups that are traversed, so the result can contain lower versions than the reduction of the
+   * entire graph.
+   * <p>
+   * If the graph was itself built for a set of TraversalRules, it can only be reduced for rules that don't traverse
+   * anything that those rules didn't expand (see {@link DependencyGraph#traversedGroups}).
+   *
+   * @param graph The dependency graph.
+   * @param rules The traversal rules that will be used to resolve the graph.
+   * @return The partial reduction of the graph.
+   * @throws CompatibilityException If an dependency has incompatible versions.
+   * @throws CyclicException If the graph has a cycle in it.
+   * @throws IllegalArgumentException If the graph was built using lazy expansion and has postponed versions or if it was
+   * built for TraversalRules that don't expand everything the given rules traverse.
+   */
+  ArtifactGraph reducePartial(DependencyGraph graph, TraversalRules rules) throws CompatibilityException, CyclicException;
+
   /**
    * Resolves the graph by downloading the artifacts. This will use the Workflow to download the artifacts in the graph.
    * This does not check version compatibility. That is done in the {@link #reduce(DependencyGraph)} method.
@@ -104,6 +261,43 @@ public interface DependencyService {
   ResolvedArtifactGraph resolve(ArtifactGraph graph, Workflow workflow, TraversalRules rules, DependencyListener... listeners)
       throws CyclicException, ArtifactMissingException, ProcessFailureException, MD5Exception, LicenseException;
 
+  /**
+   * Resolves the graph by downloading the artifacts without blocking the caller. This produces the same
+   * ResolvedArtifactGraph as {@link #resolve(ArtifactGraph, Workflow, TraversalRules, DependencyListener...)}, but it
+   * returns right away and no thread waits on the downloads.
+   * <p>
+   * Each ResolvedArtifact is passed to the consumer (and the listeners) as soon as it and every artifact before it in
+   * traversal order have been downloaded. This means that the artifacts of a module are all downloaded once the consumer
+   * has received them, so the module can be used before the rest of the graph is resolved. The consumer is called from
+   * the threads that download the artifacts.
+   *
+   * @param graph     The ArtifactGraph to resolve.
+   * @param workflow  The workflow used to resolve the artifacts.
+   * @param rules     The traversal rules that are applied while traversing the graph during the reduction.
+   * @param consumer  The consumer of the ResolvedArtifacts.
+   * @param listeners Any listeners that want to receive callbacks when artifacts are resolved.
+   * @return A future for the resolved graph. It completes exceptionally with the same exceptions that {@link
+   * #resolve(ArtifactGraph, Workflow, TraversalRules, DependencyListener...)} throws.
+   */
+  CompletableFuture<ResolvedArtifactGraph> resolveAsync(ArtifactGraph graph, Workflow workflow, TraversalRules rules,
+                                                        Consumer<ResolvedArtifact> consumer,
+                                                        DependencyListener... listeners);
+
+  /**
+   * A DependencyGraph and its reduction, which are produced together by {@link #buildAndReduceGraph(ReifiedArtifact,
+   * Dependencies, Workflow)}.
+   */
+  class ReducedGraphs {
+    public final ArtifactGraph artifactGraph;
+
+    public final DependencyGraph dependencyGraph;
+
+    public ReducedGraphs(DependencyGraph dependencyGraph, ArtifactGraph artifactGraph) {
+      this.dependencyGraph = dependencyGraph;
+      this.artifactGraph = artifactGraph;
+    }
+  }
+
   /**
    * Controls how resolution functions for each dependency-group. This determines if sources are fetched or if
    * transitive dependencies are fetch.
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.CompactGraph;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.Graph.Edge;
+
+/**
+ * Indexes the inbound edges of every node in a DependencyGraph by the origin of the edge and the version of the origin
+ * (the dependent version). Once the version of an origin has been kept, the edges from that version of the origin are
+ * a single lookup rather than a scan of every inbound edge of the node.
+ * <p>
+ * The origins of each node are kept in the order they were first seen and every edge remembers its position in the
+ * inbound edge list of the node, so the reduction can always process the edges in the order they were added to the
+ * graph.
+ *
+ * @author Brian Pontarelli
+ */
+class ReductionIndex {
+  private final Map<ArtifactID, Map<ArtifactID, Map<Version, List<IndexedEdge>>>> inbound = new HashMap<>();
+
+  ReductionIndex(DependencyGraph graph) {
+    this(graph.freeze());
+  }
+
+  ReductionIndex(CompactGraph<Dependency, DependencyEdgeValue> graph) {
+    for (int node = 0; node < graph.size(); node++) {
+      Map<ArtifactID, Map<Version, List<IndexedEdge>>> origins = new LinkedHashMap<>();
+      for (int i = 0; i < graph.inboundCount(node); i++) {
+        int edge = graph.inboundEdge(node, i);
+        ArtifactID origin = graph.node(graph.origin(edge)).id;
+        DependencyEdgeValue value = graph.value(edge);
+        origins.computeIfAbsent(origin, (id) -> new HashMap<>())
+               .computeIfAbsent(value.dependentVersion, (version) -> new ArrayList<>(1))
+               .add(new IndexedEdge(origin, value, i));
+      }
+
+      inbound.put(graph.node(node).id, origins);
+    }
+  }
+
+  /**
+   * Indexes the inbound edges of only the given nodes, which is all that an incremental reduction decides. The edges
+   * come straight from the graph, so the graph isn't frozen.
+   *
+   * @param graph The graph.
+   * @param nodes The nodes to index.
+   */
+  ReductionIndex(DependencyGraph graph, Collection<Dependency> nodes) {
+    for (Dependency node : nodes) {
+      Map<ArtifactID, Map<Version, List<IndexedEdge>>> origins = new LinkedHashMap<>();
+      List<Edge<Dependency, DependencyEdgeValue>> edges = graph.getInboundEdges(node);
+      for (int i = 0; i < edges.size(); i++) {
+        ArtifactID origin = edges.get(i).getOrigin().id;
+        DependencyEdgeValue value = edges.get(i).getValue();
+        origins.computeIfAbsent(origin, (id) -> new HashMap<>())
+               .computeIfAbsent(value.dependentVersion, (version) -> new ArrayList<>(1))
+               .add(new IndexedEdge(origin, value, i));
+      }
+
+      inbound.put(node.id, origins);
+    }
+  }
+
+  /**
+   * Returns the inbound edges of the given node from the given version of the given origin.
+   *
+   * @param destination      The node.
+   * @param origin           The origin of the edges.
+   * @param dependentVersion The version of the origin.
+   * @return The edges in the order they were added to the graph, which might be empty.
+   */
+  List<IndexedEdge> edges(Dependency destination, ArtifactID origin, Version dependentVersion) {
+    Map<ArtifactID, Map<Version, List<IndexedEdge>>> origins = inbound.get(destination.id);
+    Map<Version, List<IndexedEdge>> versions = origins != null ? origins.get(origin) : null;
+    List<IndexedEdge> edges = versions != null ? versions.get(dependentVersion) : null;
+    return edges != null ? edges : Collections.emptyList();
+  }
+
+  /**
+   * Returns the distinct origins of the inbound edges of the given node.
+   *
+   * @param destination The node.
+   * @return The origins in the order they were first added to the graph.
+   */
+  Set<ArtifactID> origins(Dependency destination) {
+    Map<ArtifactID, Map<Version, List<IndexedEdge>>> origins = inbound.get(destination.id);
+    return origins != null ? origins.keySet() : Collections.emptySet();
+  }
+
+  /**
+   * An inbound edge and its position in the inbound edge list of its destination.
+   */
+  static class IndexedEdge {
+    public final int ordinal;
+
+    public final ArtifactID origin;
+
+    public final DependencyEdgeValue value;
+
+    IndexedEdge(ArtifactID origin, DependencyEdgeValue value, int ordinal) {
+      this.origin = origin;
+      this.value = value;
+      this.ordinal = ordinal;
+    }
+  }
+}
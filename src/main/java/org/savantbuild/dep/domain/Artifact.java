@@ -87,13 +87,13 @@ public class Artifact {
     }
 
     if (parts.length == 3) {
-      id = new ArtifactID(parts[0], parts[1], parts[1], "jar");
+      id = ArtifactID.intern(parts[0], parts[1], parts[1], "jar");
       version = new Version(parts[2]);
     } else if (parts.length == 4) {
-      id = new ArtifactID(parts[0], parts[1], parts[1], parts[3]);
+      id = ArtifactID.intern(parts[0], parts[1], parts[1], parts[3]);
       version = new Version(parts[2]);
     } else if (parts.length == 5) {
-      id = new ArtifactID(parts[0], parts[1], parts[2], parts[4]);
+      id = ArtifactID.intern(parts[0], parts[1], parts[2], parts[4]);
       version = new Version(parts[3]);
     } else {
       throw new IllegalArgumentException("Invalid artifact specification [" + spec + "]. It must have 3, 4, or 5 parts");
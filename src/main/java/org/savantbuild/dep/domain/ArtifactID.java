@@ -16,15 +16,27 @@
 package org.savantbuild.dep.domain;
 
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class is contains the properties that define an artifacts identity. Any two artifacts whose identity match are
  * considered the same artifact. All other properties associated with the artifact usually determine the artifacts
  * variant (such as version).
+ * <p>
+ * ArtifactIDs can be interned (see {@link #intern()}), which works like {@link String#intern()}. Every interned
+ * ArtifactID that is equal to another is the same instance, so comparing two interned ArtifactIDs (and looking them up
+ * in hash maps) only needs an identity check. The pool is a concurrent map, so the threads that parse AMD files
+ * intern their ArtifactIDs without waiting for each other.
+ * <p>
+ * The pool keeps every ArtifactID that is interned. A long running process (such as a daemon or an IDE) can release
+ * them between builds with {@link #clearInterned()}.
  *
  * @author Brian Pontarelli
  */
 public class ArtifactID implements Comparable<ArtifactID> {
+  private static final ConcurrentMap<ArtifactID, ArtifactID> pool = new ConcurrentHashMap<>();
+
   public final String group;
 
   public final String name;
@@ -33,6 +45,8 @@ public class ArtifactID implements Comparable<ArtifactID> {
 
   public final String type;
 
+  private final int hash;
+
   /**
    * Constructs an artifact id, which is composed of a group, project, name, and type
    *
@@ -51,6 +65,35 @@ public class ArtifactID implements Comparable<ArtifactID> {
     this.project = project == null ? name : project;
     this.name = name == null ? project : name;
     this.type = type == null ? "jar" : type;
+
+    int result;
+    result = group.hashCode();
+    result = 31 * result + this.project.hashCode();
+    result = 31 * result + this.name.hashCode();
+    result = 31 * result + this.type.hashCode();
+    this.hash = result;
+  }
+
+  /**
+   * Removes every ArtifactID from the pool. The ArtifactIDs that were interned before this are still equal to the ones
+   * that are interned after it, but they aren't the same instances.
+   */
+  public static void clearInterned() {
+    pool.clear();
+  }
+
+  /**
+   * Returns the interned ArtifactID for the given group, project, name and type.
+   *
+   * @param group   the artifact group
+   * @param project the artifact project
+   * @param name    the artifact name
+   * @param type    the artifact type
+   * @return The interned ArtifactID.
+   * @throws NullPointerException If any of the arguments are null.
+   */
+  public static ArtifactID intern(String group, String project, String name, String type) throws NullPointerException {
+    return new ArtifactID(group, project, name, type).intern();
   }
 
   @Override
@@ -78,16 +121,26 @@ public class ArtifactID implements Comparable<ArtifactID> {
     }
 
     final ArtifactID that = (ArtifactID) o;
-    return group.equals(that.group) && name.equals(that.name) && project.equals(that.project) && type.equals(that.type);
+    return hash == that.hash && group.equals(that.group) && name.equals(that.name) && project.equals(that.project) && type.equals(that.type);
   }
 
   public int hashCode() {
-    int result;
-    result = group.hashCode();
-    result = 31 * result + project.hashCode();
-    result = 31 * result + name.hashCode();
-    result = 31 * result + type.hashCode();
-    return result;
+    return hash;
+  }
+
+  /**
+   * Returns the canonical instance of this ArtifactID. If there isn't one yet, this ArtifactID becomes the canonical
+   * instance. This is safe to call from any thread.
+   *
+   * @return The interned ArtifactID.
+   */
+  public ArtifactID intern() {
+    ArtifactID interned = pool.get(this);
+    if (interned == null) {
+      interned = pool.putIfAbsent(this, this);
+    }
+
+    return interned != null ? interned : this;
   }
 
   public String toString() {
@@ -15,6 +15,11 @@
  */
 package org.savantbuild.dep.domain;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import org.savantbuild.dep.graph.DependencyGraph;
 import org.savantbuild.dep.graph.DependencyGraph.Dependency;
 
@@ -29,11 +34,30 @@ public class CompatibilityException extends RuntimeException {
   public final Version min;
   public final Version max;
 
+  /**
+   * For each version of the dependency, the path of kept artifacts from the root to an artifact that depends on that
+   * version. This is empty if the paths weren't determined.
+   */
+  public final Map<Version, List<ReifiedArtifact>> paths;
+
   public CompatibilityException(DependencyGraph graph, Dependency dependency, Version min, Version max) {
-    super("The artifact [" + dependency.id + "] has incompatible versions in your dependencies. The versions are [" + min + ", " + max + "]");
+    this(graph, dependency, min, max, Collections.emptyMap());
+  }
+
+  public CompatibilityException(DependencyGraph graph, Dependency dependency, Version min, Version max,
+                                Map<Version, List<ReifiedArtifact>> paths) {
+    super("The artifact [" + dependency.id + "] has incompatible versions in your dependencies. The versions are [" + min + ", " + max + "]" + describe(paths));
     this.graph = graph;
     this.dependency = dependency;
     this.min = min;
     this.max = max;
+    this.paths = paths;
+  }
+
+  private static String describe(Map<Version, List<ReifiedArtifact>> paths) {
+    StringBuilder build = new StringBuilder();
+    paths.forEach((version, path) -> build.append("\n  The version [").append(version).append("] is required by ")
+                                         .append(path.stream().map((artifact) -> "[" + artifact + "]").collect(Collectors.joining(" -> "))));
+    return build.toString();
   }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.graph;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.savantbuild.util.Graph.Edge;
+import org.savantbuild.util.HashGraph;
+
+/**
+ * An immutable, integer indexed copy of a graph. This is created by freezing a graph once it has been built (see
+ * {@link DependencyGraph#freeze()}). It is a copy next to the graph rather than a replacement for it, so it only lives
+ * as long as the work that traverses it (such as a reduction).
+ * <p>
+ * Each node is assigned a dense int index. The nodes that are reachable from the root come first in breadth first
+ * order, so the root is always index 0. Each edge is also assigned a dense int index and the origins, destinations and
+ * values of the edges are stored in parallel arrays. The edges are numbered in the order of the outbound edges of each
+ * node, so the outbound edges of a node are a contiguous range of edge indices. The inbound edges of each node are
+ * stored in a single int array in the order they were added to the graph.
+ * <p>
+ * Traversing the graph only reads int arrays, so there are no hash lookups or edge objects after the graph is frozen.
+ * The only hash lookup is {@link #indexOf(Object)}, which converts a node to its index.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompactGraph<T, U> {
+  private final int[] destinations;
+
+  private final int[] inbound;
+
+  private final int[] inboundStart;
+
+  private final Map<T, Integer> indices = new HashMap<>();
+
+  private final Object[] nodes;
+
+  private final int[] origins;
+
+  private final int[] outboundStart;
+
+  private final Object[] values;
+
+  /**
+   * Freezes the given graph.
+   *
+   * @param graph The graph.
+   * @param root  The root of the graph, which doesn't need to be in the graph.
+   */
+  public CompactGraph(HashGraph<T, U> graph, T root) {
+    this(graph.values(), graph::getOutboundEdges, graph::getInboundEdges, root);
+  }
+
+  /**
+   * Freezes a graph that is described by its nodes and the edges of each node. The inbound edges are matched to the
+   * outbound edges by their origin, destination and value, so they don't need to be the same Edge instances. The graph
+   * can't have two edges between the same nodes with the same value.
+   *
+   * @param values        The nodes of the graph.
+   * @param outboundEdges Returns the outbound edges of a node in the order they were added.
+   * @param inboundEdges  Returns the inbound edges of a node in the order they were added.
+   * @param root          The root of the graph, which doesn't need to be in the graph.
+   */
+  CompactGraph(Collection<T> values, Function<T, List<? extends Edge<T, U>>> outboundEdges,
+               Function<T, List<? extends Edge<T, U>>> inboundEdges, T root) {
+    // Number the nodes that are reachable from the root first and then any others
+    nodes = new Object[values.size()];
+    Deque<T> queue = new ArrayDeque<>();
+    Map<T, T> canonical = new HashMap<>();
+    values.forEach((value) -> canonical.put(value, value));
+    if (canonical.containsKey(root)) {
+      number(canonical.get(root));
+      queue.add(canonical.get(root));
+    }
+
+    int edgeCount = 0;
+    while (!queue.isEmpty()) {
+      T node = queue.poll();
+      for (Edge<T, U> edge : outboundEdges.apply(node)) {
+        edgeCount++;
+        if (!indices.containsKey(edge.getDestination())) {
+          number(edge.getDestination());
+          queue.add(edge.getDestination());
+        }
+      }
+    }
+
+    for (T value : values) {
+      if (!indices.containsKey(value)) {
+        number(value);
+        edgeCount += outboundEdges.apply(value).size();
+      }
+    }
+
+    // Number the edges in the order of the outbound edges of each node
+    Map<EdgeKey, Integer> edgeIndices = new HashMap<>(edgeCount * 2);
+    destinations = new int[edgeCount];
+    origins = new int[edgeCount];
+    this.values = new Object[edgeCount];
+    outboundStart = new int[nodes.length + 1];
+    int edgeIndex = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      outboundStart[i] = edgeIndex;
+      for (Edge<T, U> edge : outboundEdges.apply(node(i))) {
+        origins[edgeIndex] = i;
+        destinations[edgeIndex] = indices.get(edge.getDestination());
+        this.values[edgeIndex] = edge.getValue();
+        edgeIndices.put(new EdgeKey(i, destinations[edgeIndex], edge.getValue()), edgeIndex++);
+      }
+    }
+
+    outboundStart[nodes.length] = edgeIndex;
+
+    inbound = new int[edgeCount];
+    inboundStart = new int[nodes.length + 1];
+    int position = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      inboundStart[i] = position;
+      for (Edge<T, U> edge : inboundEdges.apply(node(i))) {
+        Integer index = edgeIndices.get(new EdgeKey(indices.get(edge.getOrigin()), i, edge.getValue()));
+        if (index == null) {
+          throw new IllegalStateException("The inbound edge [" + edge + "] isn't an outbound edge of its origin");
+        }
+
+        inbound[position++] = index;
+      }
+    }
+
+    inboundStart[nodes.length] = position;
+  }
+
+  /**
+   * @param edge The index of an edge.
+   * @return The index of the destination of the edge.
+   */
+  public int destination(int edge) {
+    return destinations[edge];
+  }
+
+  /**
+   * @return The number of edges in the graph.
+   */
+  public int edgeCount() {
+    return destinations.length;
+  }
+
+  /**
+   * @param node The index of a node.
+   * @return The number of inbound edges of the node.
+   */
+  public int inboundCount(int node) {
+    return inboundStart[node + 1] - inboundStart[node];
+  }
+
+  /**
+   * @param node The index of a node.
+   * @param i    The position of the edge in the inbound edges of the node, in the order they were added to the graph.
+   * @return The index of the edge.
+   */
+  public int inboundEdge(int node, int i) {
+    return inbound[inboundStart[node] + i];
+  }
+
+  /**
+   * @param value A node.
+   * @return The index of the node or -1 if it isn't in the graph.
+   */
+  public int indexOf(T value) {
+    Integer index = indices.get(value);
+    return index != null ? index : -1;
+  }
+
+  /**
+   * @param node The index of a node.
+   * @return The node.
+   */
+  @SuppressWarnings("unchecked")
+  public T node(int node) {
+    return (T) nodes[node];
+  }
+
+  /**
+   * @param edge The index of an edge.
+   * @return The index of the origin of the edge.
+   */
+  public int origin(int edge) {
+    return origins[edge];
+  }
+
+  /**
+   * @param node The index of a node.
+   * @return The number of outbound edges of the node.
+   */
+  public int outboundCount(int node) {
+    return outboundStart[node + 1] - outboundStart[node];
+  }
+
+  /**
+   * @param node The index of a node.
+   * @param i    The position of the edge in the outbound edges of the node, in the order they were added to the graph.
+   * @return The index of the edge.
+   */
+  public int outboundEdge(int node, int i) {
+    return outboundStart[node] + i;
+  }
+
+  /**
+   * @return The number of nodes in the graph.
+   */
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * @param edge The index of an edge.
+   * @return The value of the edge.
+   */
+  @SuppressWarnings("unchecked")
+  public U value(int edge) {
+    return (U) values[edge];
+  }
+
+  private void number(T value) {
+    nodes[indices.size()] = value;
+    indices.put(value, indices.size());
+  }
+
+  /**
+   * Identifies an edge by the indices of its nodes and its value, which is how the graphs tell their edges apart.
+   */
+  private static class EdgeKey {
+    public final int destination;
+
+    public final int origin;
+
+    public final Object value;
+
+    public EdgeKey(int origin, int destination, Object value) {
+      this.origin = origin;
+      this.destination = destination;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      final EdgeKey edgeKey = (EdgeKey) o;
+      return origin == edgeKey.origin && destination == edgeKey.destination && Objects.equals(value, edgeKey.value);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = origin;
+      result = 31 * result + destination;
+      result = 31 * result + (value != null ? value.hashCode() : 0);
+      return result;
+    }
+  }
+}
@@ -16,24 +16,58 @@
 package org.savantbuild.dep.graph;
 
 import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.ArtifactMetaData;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.dep.domain.License;
 import org.savantbuild.dep.domain.ReifiedArtifact;
 import org.savantbuild.dep.graph.DependencyGraph.Dependency;
 import org.savantbuild.util.HashGraph;
 
 /**
  * This class is a artifact and dependency version of the Graph.
+ * <p>
+ * The graph isn't thread safe. {@link org.savantbuild.dep.DependencyGraphBuilder} prepares the edges of a batch on
+ * many threads, but only the thread that builds the graph adds them, and a finished graph can be read from any number
+ * of threads. {@link #freeze()} makes a compact copy of a finished graph for the work that traverses it.
  *
  * @author Brian Pontarelli
  */
 public class DependencyGraph extends HashGraph<Dependency, DependencyEdgeValue> {
+  /**
+   * The artifacts in the graph whose dependencies were never added to the graph because a higher version of the same
+   * artifact was selected instead. This is only used when the graph is built with lazy expansion.
+   */
+  public final Set<Artifact> postponed = new HashSet<>();
+
   public final ReifiedArtifact root;
 
+  /**
+   * The groups that were expanded when the graph was built for a set of TraversalRules or null if the graph was built
+   * using every group. The keys are the groups of the root that were traversed and the values are the groups that were
+   * expanded below them, which is null for every group and empty if the dependencies of the group weren't expanded. The
+   * artifacts below the groups that weren't expanded look like they don't have any dependencies, so the graph is only
+   * complete for these groups.
+   */
+  public Map<String, Set<String>> traversedGroups;
+
   public DependencyGraph(ReifiedArtifact root) {
     this.root = root;
   }
 
+  /**
+   * Turns off the compatibility check of the node for the given artifact. Like adding an edge, this must only be
+   * called by the thread that builds the graph.
+   *
+   * @param id The id of the artifact.
+   */
   public void skipCompatibilityCheck(ArtifactID id) {
     HashNode<Dependency, DependencyEdgeValue> node = getNode(new Dependency(id));
     node.value.skipCompatibilityCheck = true;
@@ -55,6 +89,52 @@ public class DependencyGraph extends HashGraph<Dependency, DependencyEdgeValue>
     return root.equals(that.root);
   }
 
+  /**
+   * Freezes this graph into an immutable, integer indexed copy that is much cheaper to traverse. The root of the frozen
+   * graph is always index 0 (if the root is in the graph). The compatibility checks are part of the nodes, so they are
+   * available from the frozen graph. This graph is not changed and it can still be used.
+   * <p>
+   * The frozen graph is a second copy of this graph, so it isn't kept by this graph. The reducer freezes the graph for
+   * the length of a reduction and drops the copy once the reduction returns.
+   *
+   * @return The frozen graph.
+   */
+  public CompactGraph<Dependency, DependencyEdgeValue> freeze() {
+    return new CompactGraph<>(this, new Dependency(root.id));
+  }
+
+  /**
+   * Rebuilds the ArtifactMetaData of every artifact in the graph (except the root and the postponed artifacts) from the
+   * edges of the graph. The licenses of an artifact come from the inbound edges of its version and its dependencies
+   * come from the outbound edges whose dependent version is its version. The graph doesn't store the export flag of the
+   * dependency groups, so the groups are always marked as exported.
+   * <p>
+   * If the graph was built for a set of TraversalRules (see {@link #traversedGroups}), the dependencies of the groups
+   * that weren't expanded are missing from the ArtifactMetaData.
+   *
+   * @return The ArtifactMetaData keyed by the artifacts.
+   */
+  public Map<Artifact, ArtifactMetaData> getArtifactMetaData() {
+    Map<Artifact, Dependencies> dependencies = new HashMap<>();
+    Map<Artifact, Map<License, String>> licenses = new HashMap<>();
+    values().forEach((dependency) -> {
+      getOutboundEdges(dependency).forEach((edge) -> {
+        DependencyEdgeValue value = edge.getValue();
+        Artifact origin = new Artifact(dependency.id, value.dependentVersion, false);
+        dependencies.computeIfAbsent(origin, (key) -> new Dependencies())
+                    .groups.computeIfAbsent(value.type, (type) -> new DependencyGroup(type, true))
+                    .dependencies.add(new Artifact(edge.getDestination().id, value.dependencyVersion, false));
+      });
+
+      getInboundEdges(dependency).forEach((edge) -> licenses.putIfAbsent(new Artifact(dependency.id, edge.getValue().dependencyVersion, false), edge.getValue().licenses));
+    });
+
+    Map<Artifact, ArtifactMetaData> metaData = new HashMap<>();
+    licenses.forEach((artifact, artifactLicenses) -> metaData.put(artifact, new ArtifactMetaData(dependencies.get(artifact), artifactLicenses)));
+    metaData.keySet().removeAll(postponed);
+    return metaData;
+  }
+
   @Override
   public int hashCode() {
     int result = super.hashCode();
@@ -111,7 +191,7 @@ public class DependencyGraph extends HashGraph<Dependency, DependencyEdgeValue>
   public static class Dependency {
     public final ArtifactID id;
 
-    public boolean skipCompatibilityCheck;
+    public volatile boolean skipCompatibilityCheck;
 
     public Dependency(ArtifactID id) {
       this.id = id;
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.Graph.Edge;
+
+/**
+ * Reads and writes DependencyGraphs to compact binary snapshot files. Every String in the graph is stored once in a
+ * String table and the nodes and edges refer to the Strings by index.
+ *
+ * @author Brian Pontarelli
+ */
+public class DependencyGraphSnapshot {
+  private static final int FORMAT_VERSION = 3;
+
+  private static final int MAGIC = 0x53444753;
+
+  /**
+   * Determines if any of the edges in the given graph use an integration version.
+   *
+   * @param graph The graph.
+   * @return True if the graph contains an integration version.
+   */
+  public static boolean containsIntegrationVersions(DependencyGraph graph) {
+    return graph.values().stream()
+                .flatMap((dependency) -> graph.getOutboundEdges(dependency).stream())
+                .anyMatch((edge) -> edge.getValue().dependencyVersion.isIntegration() || edge.getValue().dependentVersion.isIntegration());
+  }
+
+  /**
+   * Reads a DependencyGraph from the given snapshot file.
+   *
+   * @param file The snapshot file.
+   * @return The DependencyGraph.
+   * @throws IOException If the file could not be read or it isn't a valid snapshot.
+   */
+  public static DependencyGraph read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("The file [" + file + "] is not a valid DependencyGraph snapshot");
+      }
+
+      String[] strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      ArtifactID rootID = readID(in, strings);
+      ReifiedArtifact root = new ReifiedArtifact(rootID, new Version(strings[in.readInt()]), readLicenses(in, strings));
+      DependencyGraph graph = new DependencyGraph(root);
+
+      ArtifactID[] ids = new ArtifactID[in.readInt()];
+      List<ArtifactID> skipped = new ArrayList<>();
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = readID(in, strings);
+        if (in.readBoolean()) {
+          skipped.add(ids[i]);
+        }
+      }
+
+      int edges = in.readInt();
+      for (int i = 0; i < edges; i++) {
+        Dependency origin = new Dependency(ids[in.readInt()]);
+        Dependency destination = new Dependency(ids[in.readInt()]);
+        Version dependentVersion = new Version(strings[in.readInt()]);
+        Version dependencyVersion = new Version(strings[in.readInt()]);
+        String type = strings[in.readInt()];
+        graph.addEdge(origin, destination, new DependencyEdgeValue(dependentVersion, dependencyVersion, type, readLicenses(in, strings)));
+      }
+
+      skipped.forEach(graph::skipCompatibilityCheck);
+
+      int postponed = in.readInt();
+      for (int i = 0; i < postponed; i++) {
+        graph.postponed.add(new Artifact(ids[in.readInt()], new Version(strings[in.readInt()]), false));
+      }
+
+      int traversedGroups = in.readInt();
+      if (traversedGroups >= 0) {
+        graph.traversedGroups = new TreeMap<>();
+        for (int i = 0; i < traversedGroups; i++) {
+          String type = strings[in.readInt()];
+          int groups = in.readInt();
+          Set<String> expanded = groups >= 0 ? new TreeSet<>() : null;
+          for (int j = 0; j < groups; j++) {
+            expanded.add(strings[in.readInt()]);
+          }
+
+          graph.traversedGroups.put(type, expanded);
+        }
+      }
+
+      return graph;
+    } catch (RuntimeException e) {
+      throw new IOException("The file [" + file + "] is not a valid DependencyGraph snapshot", e);
+    }
+  }
+
+  /**
+   * Writes the given DependencyGraph to the given snapshot file. The snapshot is written to a temporary file first and
+   * then moved into place so that a partially written snapshot is never read.
+   *
+   * @param graph The graph to write.
+   * @param file  The snapshot file.
+   * @throws IOException If the file could not be written.
+   */
+  public static void write(DependencyGraph graph, Path file) throws IOException {
+    // Sort the nodes so that the same graph always produces the same file
+    List<Dependency> nodes = new ArrayList<>(graph.values());
+    nodes.sort((one, two) -> one.id.compareTo(two.id));
+    Map<ArtifactID, Integer> nodeIndexes = new HashMap<>();
+    nodes.forEach((node) -> nodeIndexes.put(node.id, nodeIndexes.size()));
+
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    addID(strings, graph.root.id);
+    strings.putIfAbsent(graph.root.version.toString(), strings.size());
+    addLicenses(strings, graph.root.licenses);
+    nodes.forEach((node) -> {
+      addID(strings, node.id);
+      graph.getOutboundEdges(node).forEach((edge) -> {
+        strings.putIfAbsent(edge.getValue().dependentVersion.toString(), strings.size());
+        strings.putIfAbsent(edge.getValue().dependencyVersion.toString(), strings.size());
+        strings.putIfAbsent(edge.getValue().type, strings.size());
+        addLicenses(strings, edge.getValue().licenses);
+      });
+    });
+
+    List<Artifact> postponed = new ArrayList<>(graph.postponed);
+    postponed.sort((one, two) -> one.toString().compareTo(two.toString()));
+    postponed.forEach((artifact) -> strings.putIfAbsent(artifact.version.toString(), strings.size()));
+
+    // Sort the traversed groups for the same reason
+    Map<String, Set<String>> traversedGroups = graph.traversedGroups != null ? new TreeMap<>(graph.traversedGroups) : null;
+    if (traversedGroups != null) {
+      traversedGroups.replaceAll((type, groups) -> groups != null ? new TreeSet<>(groups) : null);
+      traversedGroups.forEach((type, groups) -> {
+        strings.putIfAbsent(type, strings.size());
+        if (groups != null) {
+          groups.forEach((group) -> strings.putIfAbsent(group, strings.size()));
+        }
+      });
+    }
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "savant-graph", "tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+          byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+        }
+
+        writeID(out, strings, graph.root.id);
+        out.writeInt(strings.get(graph.root.version.toString()));
+        writeLicenses(out, strings, graph.root.licenses);
+
+        out.writeInt(nodes.size());
+        List<Edge<Dependency, DependencyEdgeValue>> edges = new ArrayList<>();
+        for (Dependency node : nodes) {
+          writeID(out, strings, node.id);
+          out.writeBoolean(node.skipCompatibilityCheck);
+          edges.addAll(graph.getOutboundEdges(node));
+        }
+
+        out.writeInt(edges.size());
+        for (Edge<Dependency, DependencyEdgeValue> edge : edges) {
+          DependencyEdgeValue value = edge.getValue();
+          out.writeInt(nodeIndexes.get(edge.getOrigin().id));
+          out.writeInt(nodeIndexes.get(edge.getDestination().id));
+          out.writeInt(strings.get(value.dependentVersion.toString()));
+          out.writeInt(strings.get(value.dependencyVersion.toString()));
+          out.writeInt(strings.get(value.type));
+          writeLicenses(out, strings, value.licenses);
+        }
+
+        out.writeInt(postponed.size());
+        for (Artifact artifact : postponed) {
+          out.writeInt(nodeIndexes.get(artifact.id));
+          out.writeInt(strings.get(artifact.version.toString()));
+        }
+
+        out.writeInt(traversedGroups != null ? traversedGroups.size() : -1);
+        if (traversedGroups != null) {
+          for (Map.Entry<String, Set<String>> entry : traversedGroups.entrySet()) {
+            out.writeInt(strings.get(entry.getKey()));
+            out.writeInt(entry.getValue() != null ? entry.getValue().size() : -1);
+            if (entry.getValue() != null) {
+              for (String group : entry.getValue()) {
+                out.writeInt(strings.get(group));
+              }
+            }
+          }
+        }
+      }
+
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void addID(Map<String, Integer> strings, ArtifactID id) {
+    strings.putIfAbsent(id.group, strings.size());
+    strings.putIfAbsent(id.project, strings.size());
+    strings.putIfAbsent(id.name, strings.size());
+    strings.putIfAbsent(id.type, strings.size());
+  }
+
+  private static void addLicenses(Map<String, Integer> strings, Map<License, String> licenses) {
+    licenses.forEach((license, text) -> {
+      strings.putIfAbsent(license.name(), strings.size());
+      if (text != null) {
+        strings.putIfAbsent(text, strings.size());
+      }
+    });
+  }
+
+  private static ArtifactID readID(DataInputStream in, String[] strings) throws IOException {
+    return ArtifactID.intern(strings[in.readInt()], strings[in.readInt()], strings[in.readInt()], strings[in.readInt()]);
+  }
+
+  private static Map<License, String> readLicenses(DataInputStream in, String[] strings) throws IOException {
+    Map<License, String> licenses = new LinkedHashMap<>();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      License license = License.valueOf(strings[in.readInt()]);
+      int text = in.readInt();
+      licenses.put(license, text < 0 ? null : strings[text]);
+    }
+
+    return licenses;
+  }
+
+  private static void writeID(DataOutputStream out, Map<String, Integer> strings, ArtifactID id) throws IOException {
+    out.writeInt(strings.get(id.group));
+    out.writeInt(strings.get(id.project));
+    out.writeInt(strings.get(id.name));
+    out.writeInt(strings.get(id.type));
+  }
+
+  private static void writeLicenses(DataOutputStream out, Map<String, Integer> strings, Map<License, String> licenses)
+      throws IOException {
+    out.writeInt(licenses.size());
+    for (Map.Entry<License, String> entry : licenses.entrySet()) {
+      out.writeInt(strings.get(entry.getKey().name()));
+      out.writeInt(entry.getValue() == null ? -1 : strings.get(entry.getValue()));
+    }
+  }
+}
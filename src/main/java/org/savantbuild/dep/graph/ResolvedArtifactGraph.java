@@ -15,7 +15,11 @@
  */
 package org.savantbuild.dep.graph;
 
+import java.nio.file.Path;
 import java.util.Formatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.savantbuild.dep.domain.ArtifactID;
 import org.savantbuild.dep.domain.ResolvedArtifact;
@@ -32,10 +36,32 @@ import org.savantbuild.util.HashGraph;
 public class ResolvedArtifactGraph extends HashGraph<ResolvedArtifact, String> {
   public final ResolvedArtifact root;
 
+  /**
+   * Completes once all of the source JARs that are fetched in the background have been fetched. This is already
+   * complete if the sources were fetched while the graph was resolved.
+   */
+  public CompletableFuture<Void> sourcesFetched = CompletableFuture.completedFuture(null);
+
+  private final Map<ArtifactID, Path> sourcePaths = new ConcurrentHashMap<>();
+
   public ResolvedArtifactGraph(ResolvedArtifact root) {
     this.root = root;
   }
 
+  /**
+   * Adds the Path of the source JAR of an artifact in the graph. The ResolvedArtifacts are immutable, so this records
+   * the source JARs that are fetched after an artifact was added to the graph, including the ones that are fetched in
+   * the background. This is safe to call from any thread.
+   *
+   * @param id         The id of the artifact.
+   * @param sourcePath The Path of the source JAR or null if the artifact doesn't have one.
+   */
+  public void addSourcePath(ArtifactID id, Path sourcePath) {
+    if (sourcePath != null) {
+      sourcePaths.put(id, sourcePath);
+    }
+  }
+
   /**
    * Brute force traverses the graph and locates the Path for the given artifact. This only needs the ArtifactID because
    * this graph will never contain two versions of the same artifact.
@@ -52,6 +78,23 @@ public class ResolvedArtifactGraph extends HashGraph<ResolvedArtifact, String> {
     return null;
   }
 
+  /**
+   * Locates the Path of the source JAR for the given artifact. This includes the source JARs that were added after the
+   * artifact was added to the graph, such as the ones that have been fetched in the background so far.
+   *
+   * @param id The id.
+   * @return The Path or null if the graph doesn't contain the given Artifact or its source JAR hasn't been fetched.
+   */
+  public Path getSourcePath(ArtifactID id) {
+    Path sourcePath = sourcePaths.get(id);
+    if (sourcePath != null) {
+      return sourcePath;
+    }
+
+    ResolvedArtifact match = find(root, (artifact) -> artifact.id.equals(id));
+    return match != null ? match.sourceFile : null;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
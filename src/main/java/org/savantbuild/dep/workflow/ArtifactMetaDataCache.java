@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.workflow;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ArtifactMetaData;
+
+/**
+ * A bounded and thread-safe cache of parsed ArtifactMetaData. A single instance can be shared by all of the Workflows in
+ * a JVM so that the AMD files are only parsed once no matter how many times the dependency graph is built.
+ * <p>
+ * The cache is bounded by weight. The weight of an entry is one plus the number of dependencies in the AMD and the least
+ * recently used entries are evicted once the total weight exceeds the maximum weight. Release versions never change once
+ * they are published, so they stay in the cache until they are evicted. Integration versions can be republished at any
+ * time, so they expire once they are older than the integration time to live.
+ *
+ * @author Brian Pontarelli
+ */
+public class ArtifactMetaDataCache {
+  private final Map<Artifact, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final long integrationTimeToLive;
+
+  private final long maximumWeight;
+
+  private long evictions;
+
+  private long expirations;
+
+  private long hits;
+
+  private long misses;
+
+  private long weight;
+
+  /**
+   * Constructs the cache.
+   *
+   * @param maximumWeight         The maximum total weight of the cache.
+   * @param integrationTimeToLive How long the AMD of integration versions is kept.
+   */
+  public ArtifactMetaDataCache(long maximumWeight, Duration integrationTimeToLive) {
+    Objects.requireNonNull(integrationTimeToLive, "ArtifactMetaDataCache requires an integrationTimeToLive");
+    if (maximumWeight < 1) {
+      throw new IllegalArgumentException("The maximum weight of the ArtifactMetaDataCache must be at least 1");
+    }
+
+    this.maximumWeight = maximumWeight;
+    this.integrationTimeToLive = integrationTimeToLive.toNanos();
+  }
+
+  /**
+   * Removes all of the entries from the cache. This does not reset the counters.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * Returns the AMD for the given artifact if it is in the cache and hasn't expired.
+   *
+   * @param artifact The artifact.
+   * @return The ArtifactMetaData or null if it isn't cached.
+   */
+  public synchronized ArtifactMetaData get(Artifact artifact) {
+    Artifact key = new Artifact(artifact.id, artifact.version, false);
+    Entry entry = entries.get(key);
+    if (entry != null && entry.integration && System.nanoTime() - entry.created >= integrationTimeToLive) {
+      entries.remove(key);
+      weight -= entry.weight;
+      expirations++;
+      entry = null;
+    }
+
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    return entry.metaData;
+  }
+
+  /**
+   * @return The number of entries that were evicted because the cache exceeded its maximum weight.
+   */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return The number of integration version entries that were removed because they expired.
+   */
+  public synchronized long getExpirationCount() {
+    return expirations;
+  }
+
+  /**
+   * @return The number of calls to {@link #get(Artifact)} that returned a cached AMD.
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return The number of calls to {@link #get(Artifact)} that didn't find a cached AMD.
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * @return The current total weight of the cache.
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Adds the AMD for the given artifact to the cache and evicts the least recently used entries if the cache is now
+   * over its maximum weight.
+   *
+   * @param artifact The artifact.
+   * @param metaData The AMD of the artifact.
+   */
+  public synchronized void put(Artifact artifact, ArtifactMetaData metaData) {
+    Entry entry = new Entry(metaData, artifact.isIntegrationBuild());
+    Entry old = entries.put(new Artifact(artifact.id, artifact.version, false), entry);
+    if (old != null) {
+      weight -= old.weight;
+    }
+
+    weight += entry.weight;
+
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (weight > maximumWeight && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      weight -= eldest.weight;
+      evictions++;
+    }
+  }
+
+  /**
+   * @return The number of entries in the cache.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private static class Entry {
+    public final long created = System.nanoTime();
+
+    public final boolean integration;
+
+    public final ArtifactMetaData metaData;
+
+    public final long weight;
+
+    public Entry(ArtifactMetaData metaData, boolean integration) {
+      this.metaData = metaData;
+      this.integration = integration;
+
+      long weight = 1;
+      if (metaData.dependencies != null) {
+        weight += metaData.dependencies.groups.values().stream().mapToInt((group) -> group.dependencies.size()).sum();
+      }
+      this.weight = weight;
+    }
+  }
+}
@@ -18,8 +18,13 @@ package org.savantbuild.dep.workflow;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.workflow.process.Process;
@@ -67,4 +72,59 @@ public class FetchWorkflow {
                     .findFirst()
                     .orElse(null);
   }
+
+  /**
+   * Fetches an item for each of the given artifacts. The processes are run in order and each process is given all of
+   * the artifacts that the previous processes didn't find. This means that a remote process is only asked for the
+   * items that couldn't be found locally. If an executor is given, the items are fetched from each process
+   * concurrently.
+   * <p>
+   * A failure only stops the search for the item of that artifact. The failure is put into the failures Map and the
+   * rest of the items are still fetched.
+   *
+   * @param artifacts       The artifacts.
+   * @param item            A function that returns the name of the item being fetched for an artifact. See {@link
+   *                        #fetchItem(Artifact, String, PublishWorkflow)} for the format of the name.
+   * @param publishWorkflow The PublishWorkflow that is used to store the items that are found.
+   * @param executor        (Optional) The executor used to fetch the items concurrently.
+   * @param failures        The Map that the failures are put into.
+   * @return The files of the items that were found. The artifacts that aren't in this Map or in the failures Map were
+   * not found.
+   */
+  public Map<Artifact, Path> fetchItems(List<Artifact> artifacts, Function<Artifact, String> item,
+                                        PublishWorkflow publishWorkflow, ExecutorService executor,
+                                        Map<Artifact, RuntimeException> failures) {
+    Map<Artifact, Path> files = new HashMap<>();
+    List<Artifact> remaining = artifacts;
+    for (Process process : processes) {
+      if (remaining.isEmpty()) {
+        break;
+      }
+
+      output.debugln("Running process [%s] to fetch [%d] items", process, remaining.size());
+
+      Map<Artifact, Future<Path>> futures = new HashMap<>();
+      if (executor != null) {
+        remaining.forEach((artifact) -> futures.put(artifact, executor.submit(() -> process.fetch(artifact, item.apply(artifact), publishWorkflow))));
+      }
+
+      List<Artifact> misses = new ArrayList<>();
+      for (Artifact artifact : remaining) {
+        try {
+          Path file = executor != null ? FutureTools.await(artifact, futures.get(artifact)) : process.fetch(artifact, item.apply(artifact), publishWorkflow);
+          if (file != null) {
+            files.put(artifact, file);
+          } else {
+            misses.add(artifact);
+          }
+        } catch (RuntimeException e) {
+          failures.put(artifact, e);
+        }
+      }
+
+      remaining = misses;
+    }
+
+    return files;
+  }
 }
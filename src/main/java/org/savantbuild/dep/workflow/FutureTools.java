@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.workflow;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.workflow.process.ProcessFailureException;
+
+/**
+ * Future utilities for the work that is done for artifacts on other threads.
+ *
+ * @author Brian Pontarelli
+ */
+public class FutureTools {
+  /**
+   * Waits for the given Future of the given artifact. The unchecked exceptions and errors of the work are rethrown as
+   * is, so the caller sees the same exceptions as if it had done the work itself. Checked exceptions and interrupts are
+   * wrapped in a ProcessFailureException for the artifact.
+   *
+   * @param artifact The artifact that the work was done for.
+   * @param future   The Future of the work.
+   * @param <T>      The type of the result.
+   * @return The result.
+   * @throws ProcessFailureException If the work threw a checked exception or the thread was interrupted while waiting.
+   */
+  public static <T> T await(Artifact artifact, Future<T> future) throws ProcessFailureException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessFailureException(artifact, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new ProcessFailureException(artifact, cause);
+    }
+  }
+}
@@ -18,6 +18,12 @@ package org.savantbuild.dep.workflow;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.ArtifactMetaData;
@@ -36,11 +42,26 @@ import org.xml.sax.SAXException;
 public class Workflow {
   public final FetchWorkflow fetchWorkflow;
 
+  public final ArtifactMetaDataCache metaDataCache;
+
   public final PublishWorkflow publishWorkflow;
 
   public Workflow(FetchWorkflow fetchWorkflow, PublishWorkflow publishWorkflow) {
+    this(fetchWorkflow, publishWorkflow, null);
+  }
+
+  /**
+   * Constructs a workflow that stores the parsed AMD files in the given cache. The cache can be shared between many
+   * workflows.
+   *
+   * @param fetchWorkflow   The fetch workflow.
+   * @param publishWorkflow The publish workflow.
+   * @param metaDataCache   (Optional) The cache of parsed AMD files.
+   */
+  public Workflow(FetchWorkflow fetchWorkflow, PublishWorkflow publishWorkflow, ArtifactMetaDataCache metaDataCache) {
     this.fetchWorkflow = fetchWorkflow;
     this.publishWorkflow = publishWorkflow;
+    this.metaDataCache = metaDataCache;
   }
 
   /**
@@ -69,6 +90,9 @@ public class Workflow {
    * Fetches the artifact meta data. Every artifact in Savant is required to have an AMD file. Otherwise, it is
    * considered a missing artifact entirely. Therefore, Savant never negative caches AMD files and this method will
    * always return an AMD file or throw an ArtifactMetaDataMissingException.
+   * <p>
+   * If this workflow has an {@link ArtifactMetaDataCache}, the cache is checked first and the AMD is only fetched and
+   * parsed if it isn't cached.
    *
    * @param artifact The artifact to fetch the meta data for.
    * @return The ArtifactMetaData object and never null.
@@ -79,16 +103,73 @@ public class Workflow {
    */
   public ArtifactMetaData fetchMetaData(Artifact artifact)
       throws ArtifactMetaDataMissingException, ProcessFailureException, MD5Exception {
+    if (metaDataCache != null) {
+      ArtifactMetaData amd = metaDataCache.get(artifact);
+      if (amd != null) {
+        return amd;
+      }
+    }
+
     Path file = fetchWorkflow.fetchItem(artifact, artifact.getArtifactMetaDataFile(), publishWorkflow);
     if (file == null) {
       throw new ArtifactMetaDataMissingException(artifact);
     }
 
-    try {
-      return ArtifactTools.parseArtifactMetaData(file);
-    } catch (IllegalArgumentException | NullPointerException | SAXException | ParserConfigurationException | IOException | VersionException e) {
-      throw new ProcessFailureException(artifact, e);
+    return parseMetaData(artifact, file);
+  }
+
+  /**
+   * Fetches the artifact meta data for many artifacts at once. This uses {@link FetchWorkflow#fetchItems} so that each
+   * process is asked for all of the AMD files that the previous processes didn't find at once. If an executor is given,
+   * the AMD files are fetched and parsed concurrently.
+   * <p>
+   * A failure only applies to a single artifact. If the AMD file of an artifact is missing, an
+   * ArtifactMetaDataMissingException is put into the failures Map. Any other failure is put into the failures Map as
+   * it was thrown.
+   *
+   * @param artifacts The artifacts to fetch the meta data for.
+   * @param executor  (Optional) The executor used to fetch and parse the AMD files concurrently.
+   * @param failures  The Map that the failures are put into.
+   * @return The ArtifactMetaData of every artifact that didn't fail.
+   */
+  public Map<Artifact, ArtifactMetaData> fetchMetaData(List<Artifact> artifacts, ExecutorService executor,
+                                                       Map<Artifact, RuntimeException> failures) {
+    Map<Artifact, ArtifactMetaData> metaData = new HashMap<>();
+    List<Artifact> misses = new ArrayList<>();
+    for (Artifact artifact : artifacts) {
+      ArtifactMetaData amd = metaDataCache != null ? metaDataCache.get(artifact) : null;
+      if (amd != null) {
+        metaData.put(artifact, amd);
+      } else {
+        misses.add(artifact);
+      }
+    }
+
+    Map<Artifact, Path> files = fetchWorkflow.fetchItems(misses, Artifact::getArtifactMetaDataFile, publishWorkflow, executor, failures);
+    Map<Artifact, Future<ArtifactMetaData>> futures = new HashMap<>();
+    if (executor != null) {
+      files.forEach((artifact, file) -> futures.put(artifact, executor.submit(() -> parseMetaData(artifact, file))));
+    }
+
+    for (Artifact artifact : misses) {
+      if (failures.containsKey(artifact)) {
+        continue;
+      }
+
+      Path file = files.get(artifact);
+      if (file == null) {
+        failures.put(artifact, new ArtifactMetaDataMissingException(artifact));
+        continue;
+      }
+
+      try {
+        metaData.put(artifact, executor != null ? FutureTools.await(artifact, futures.get(artifact)) : parseMetaData(artifact, file));
+      } catch (RuntimeException e) {
+        failures.put(artifact, e);
+      }
     }
+
+    return metaData;
   }
 
   /**
@@ -116,4 +197,19 @@ public class Workflow {
       return null;
     }
   }
+
+  private ArtifactMetaData parseMetaData(Artifact artifact, Path file) {
+    ArtifactMetaData amd;
+    try {
+      amd = ArtifactTools.parseArtifactMetaData(file);
+    } catch (IllegalArgumentException | NullPointerException | SAXException | ParserConfigurationException | IOException | VersionException e) {
+      throw new ProcessFailureException(artifact, e);
+    }
+
+    if (metaDataCache != null) {
+      metaDataCache.put(artifact, amd);
+    }
+
+    return amd;
+  }
 }
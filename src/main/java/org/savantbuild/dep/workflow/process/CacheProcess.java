@@ -142,4 +142,11 @@ public class CacheProcess implements Process {
 
     return cacheFile;
   }
+
+  @Override
+  public String toString() {
+    return "CacheProcess{" +
+        "dir='" + dir + '\'' +
+        '}';
+  }
 }
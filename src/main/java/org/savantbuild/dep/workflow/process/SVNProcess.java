@@ -147,6 +147,14 @@ public class SVNProcess implements Process {
     }
   }
 
+  @Override
+  public String toString() {
+    return "SVNProcess{" +
+        "repository='" + repository + '\'' +
+        ", username='" + username + '\'' +
+        '}';
+  }
+
   private boolean export(URI uri, Path file) throws IOException, InterruptedException {
     ProcessResult result;
     if (username != null) {
@@ -189,7 +189,7 @@ public class ArtifactTools {
             throw new SAXException("Invalid AMD file. A dependency doesn't appear to be inside a dependency-group element");
           }
 
-          Artifact dependency = new Artifact(new ArtifactID(dependencyGroup, dependencyProject, dependencyName, dependencyType), new Version(dependencyVersion), false);
+          Artifact dependency = new Artifact(ArtifactID.intern(dependencyGroup, dependencyProject, dependencyName, dependencyType), new Version(dependencyVersion), false);
           group.dependencies.add(dependency);
 
           break;
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.savantbuild.dep.AsyncDependencyListener.Overflow;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ResolvedArtifact;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the AsyncDependencyListener.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class AsyncDependencyListenerTest extends BaseUnitTest {
+  @Test
+  public void batches() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingListener recording = new RecordingListener(release);
+    AsyncDependencyListener listener = new AsyncDependencyListener(recording).withMaxBatchSize(3);
+
+    // The first artifact blocks the listener, so the rest are queued and batched
+    List<ResolvedArtifact> artifacts = artifacts(8);
+    listener.artifactFetched(artifacts.get(0));
+    recording.entered.await();
+    artifacts.subList(1, 6).forEach(listener::artifactFetched);
+    listener.artifactPublished(new Artifact("org.example:published:1.0.0", false));
+    listener.sourceFetched(artifacts.get(0), Paths.get("source.jar"));
+    artifacts.subList(6, 8).forEach(listener::artifactFetched);
+    release.countDown();
+    listener.close();
+
+    // The events are in order and the consecutive fetched artifacts are batched without going over the maximum
+    assertEquals(recording.events, asList(
+        "fetched " + artifacts.subList(0, 1),
+        "fetched " + artifacts.subList(1, 4),
+        "fetched " + artifacts.subList(4, 6),
+        "published " + new Artifact("org.example:published:1.0.0", false),
+        "source " + artifacts.get(0) + " source.jar",
+        "fetched " + artifacts.subList(6, 8)
+    ));
+    assertNotSame(Thread.currentThread(), recording.thread);
+  }
+
+  /**
+   * Every event that is accepted while the listener is being closed is still passed to the listener, even when the
+   * senders are waiting for room in the queue.
+   */
+  @Test
+  public void closeWhileSending() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      RecordingListener recording = new RecordingListener(null);
+      AsyncDependencyListener listener = new AsyncDependencyListener(recording).withQueueSize(2);
+      AtomicInteger accepted = new AtomicInteger();
+      CountDownLatch started = new CountDownLatch(4);
+      List<Thread> senders = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Thread sender = new Thread(() -> {
+          started.countDown();
+          try {
+            for (int j = 0; j < 1000; j++) {
+              listener.artifactPublished(new Artifact("org.example:published:1.0." + j, false));
+              accepted.incrementAndGet();
+            }
+          } catch (IllegalStateException e) {
+            // Expected once the listener is closed
+          }
+        });
+        sender.start();
+        senders.add(sender);
+      }
+
+      started.await();
+      listener.close();
+      for (Thread sender : senders) {
+        sender.join();
+      }
+
+      assertEquals(recording.events.size(), accepted.get());
+    }
+  }
+
+  @Test
+  public void closeWithoutEvents() {
+    AsyncDependencyListener listener = new AsyncDependencyListener(new RecordingListener(null));
+    listener.close();
+
+    try {
+      listener.artifactPublished(new Artifact("org.example:published:1.0.0", false));
+      fail("Should have failed");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void drop() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingListener recording = new RecordingListener(release);
+    AsyncDependencyListener listener = new AsyncDependencyListener(recording).withOverflow(Overflow.DROP)
+                                                                             .withQueueSize(2);
+
+    // The listener is blocked on the first artifact, so only the next 2 fit in the queue
+    List<ResolvedArtifact> artifacts = artifacts(10);
+    listener.artifactFetched(artifacts.get(0));
+    recording.entered.await();
+    artifacts.subList(1, 10).forEach(listener::artifactFetched);
+    assertEquals(listener.getDropped(), 7);
+    release.countDown();
+    listener.close();
+
+    assertEquals(recording.events, asList("fetched " + artifacts.subList(0, 1), "fetched " + artifacts.subList(1, 3)));
+  }
+
+  @Test
+  public void error() {
+    List<ResolvedArtifact> fetched = new ArrayList<>();
+    AsyncDependencyListener listener = new AsyncDependencyListener(new RecordingListener(null) {
+      @Override
+      public void artifactPublished(Artifact artifact) {
+        throw new Error("Bad listener");
+      }
+
+      @Override
+      public void artifactsFetched(List<ResolvedArtifact> artifacts) {
+        fetched.addAll(artifacts);
+      }
+    });
+
+    // The error doesn't stop the thread, so the artifacts after it are still passed to the listener
+    List<ResolvedArtifact> artifacts = artifacts(2);
+    listener.artifactPublished(new Artifact("org.example:published:1.0.0", false));
+    artifacts.forEach(listener::artifactFetched);
+    try {
+      listener.close();
+      fail("Should have failed");
+    } catch (Error e) {
+      assertEquals(e.getMessage(), "Bad listener");
+    }
+
+    assertEquals(fetched, artifacts);
+  }
+
+  @Test
+  public void failure() {
+    AsyncDependencyListener listener = new AsyncDependencyListener(new RecordingListener(null) {
+      @Override
+      public void artifactPublished(Artifact artifact) {
+        throw new IllegalArgumentException("Bad artifact");
+      }
+    });
+
+    List<ResolvedArtifact> artifacts = artifacts(2);
+    listener.artifactPublished(new Artifact("org.example:published:1.0.0", false));
+    artifacts.forEach(listener::artifactFetched);
+    try {
+      listener.close();
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      assertEquals(e.getMessage(), "Bad artifact");
+    }
+  }
+
+  /**
+   * A sender that is waiting for room in the queue and the listener being closed both fail once the thread stops rather
+   * than waiting forever for it to take the next event.
+   */
+  @Test
+  public void stoppedThread() throws Exception {
+    RecordingListener recording = new RecordingListener(new CountDownLatch(1));
+    AsyncDependencyListener listener = new AsyncDependencyListener(recording).withQueueSize(1);
+
+    // The listener is blocked on the first artifact and the second fills the queue, so the third waits for room
+    List<ResolvedArtifact> artifacts = artifacts(3);
+    listener.artifactFetched(artifacts.get(0));
+    recording.entered.await();
+    listener.artifactFetched(artifacts.get(1));
+
+    AtomicReference<Exception> senderFailure = new AtomicReference<>();
+    Thread sender = new Thread(() -> {
+      try {
+        listener.artifactFetched(artifacts.get(2));
+      } catch (Exception e) {
+        senderFailure.set(e);
+      }
+    });
+    sender.start();
+
+    recording.thread.interrupt();
+    recording.thread.join();
+    sender.join();
+    assertTrue(senderFailure.get() instanceof IllegalStateException);
+
+    try {
+      listener.artifactPublished(new Artifact("org.example:published:1.0.0", false));
+      fail("Should have failed");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    try {
+      listener.close();
+      fail("Should have failed");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof InterruptedException);
+    }
+  }
+
+  private List<ResolvedArtifact> artifacts(int count) {
+    List<ResolvedArtifact> artifacts = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      artifacts.add(new ResolvedArtifact("org.example:artifact" + i + ":1.0.0", MapBuilder.simpleMap(License.ApacheV2_0, null), Paths.get("artifact" + i + ".jar"), null));
+    }
+
+    return artifacts;
+  }
+
+  /**
+   * Records the events. The first batch of fetched artifacts blocks until the release latch is counted down.
+   */
+  private static class RecordingListener implements DependencyListener {
+    public final CountDownLatch entered = new CountDownLatch(1);
+
+    public final List<String> events = new ArrayList<>();
+
+    public final CountDownLatch release;
+
+    public volatile Thread thread;
+
+    public RecordingListener(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void artifactFetched(ResolvedArtifact artifact) {
+      throw new AssertionError("The artifacts should be passed in batches");
+    }
+
+    @Override
+    public void artifactPublished(Artifact artifact) {
+      events.add("published " + artifact);
+    }
+
+    @Override
+    public void artifactsFetched(List<ResolvedArtifact> artifacts) {
+      thread = Thread.currentThread();
+      events.add("fetched " + artifacts);
+      entered.countDown();
+      if (release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+
+    @Override
+    public void sourceFetched(ResolvedArtifact artifact, Path sourceFile) {
+      events.add("source " + artifact + " " + sourceFile);
+    }
+  }
+}
@@ -18,9 +18,23 @@ package org.savantbuild.dep;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.DependencyService.ReducedGraphs;
 import org.savantbuild.dep.DependencyService.TraversalRules;
 import org.savantbuild.dep.DependencyService.TraversalRules.GroupTraversalRule;
 import org.savantbuild.dep.domain.Artifact;
@@ -42,6 +56,7 @@ import org.savantbuild.dep.graph.ResolvedArtifactGraph;
 import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.PublishWorkflow;
+import org.savantbuild.dep.workflow.Workflow;
 import org.savantbuild.dep.workflow.process.CacheProcess;
 import org.savantbuild.security.MD5;
 import org.savantbuild.security.MD5Exception;
@@ -52,8 +67,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.sun.net.httpserver.HttpServer;
+import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -196,6 +215,13 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     assertFalse(Files.isDirectory(cache));
   }
 
+  @Test
+  public void buildAndReduceGraph() {
+    ReducedGraphs actual = service.buildAndReduceGraph(project, dependencies, workflow);
+    assertEquals(actual.artifactGraph, goodReducedGraph);
+    assertEquals(new DependencyGraphReducer(output).reduce(actual.dependencyGraph), goodReducedGraph);
+  }
+
   @Test
   public void buildGraph() {
     DependencyGraph actual = service.buildGraph(project, dependencies, workflow);
@@ -246,6 +272,118 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     }
   }
 
+  @Test
+  public void buildGraphFetchesEachArtifactOnce() {
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    Workflow countingWorkflow = makeCountingWorkflow(fetches);
+
+    DependencyGraph actual = service.buildGraph(project, dependencies, countingWorkflow);
+    assertEquals(actual, goodGraph);
+    assertEquals(fetches.size(), 11);
+    fetches.forEach((artifact, count) -> assertEquals((int) count, 1, "Fetched [" + artifact + "] more than once"));
+  }
+
+  @Test
+  public void buildGraphParallel() {
+    DependencyGraph actual = new DefaultDependencyService(output).withFetchThreads(4).buildGraph(project, dependencies, workflow);
+    assertEquals(actual, goodGraph);
+  }
+
+  @Test
+  public void buildGraphParallelFailureMissingDependency() {
+    try {
+      Dependencies dependencies = makeSimpleDependencies("org.savantbuild.test:missing:1.0.0");
+      new DefaultDependencyService(output).withFetchThreads(4).buildGraph(project, dependencies, workflow);
+      fail("Should have failed");
+    } catch (ArtifactMetaDataMissingException e) {
+      assertEquals(e.artifactMissingAMD, new Artifact("org.savantbuild.test:missing:1.0.0", false));
+    }
+  }
+
+  @Test
+  public void buildGraphSnapshot() throws IOException {
+    Path snapshots = projectDir.resolve("build/test/graph-snapshots");
+    PathTools.prune(snapshots);
+
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    Workflow countingWorkflow = makeCountingWorkflow(fetches);
+
+    // Only release versions, so the graph is written and then read back on the second build
+    DefaultDependencyService service = new DefaultDependencyService(output).withGraphSnapshotDirectory(snapshots);
+    Dependencies releaseDependencies = makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0");
+    DependencyGraph expected = service.buildGraph(project, releaseDependencies, countingWorkflow);
+    assertEquals(Files.list(snapshots).count(), 1L);
+    assertTrue(fetches.size() > 0);
+
+    fetches.clear();
+    DependencyGraph actual = service.buildGraph(project, releaseDependencies, countingWorkflow);
+    assertEquals(actual, expected);
+    assertEquals(fetches.size(), 0);
+
+    // The good graph contains integration versions, so it is never written
+    PathTools.prune(snapshots);
+    actual = service.buildGraph(project, dependencies, countingWorkflow);
+    assertEquals(actual, goodGraph);
+    assertFalse(Files.isDirectory(snapshots));
+  }
+
+  @Test
+  public void buildPartialGraph() {
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(false, "compile"));
+    DependencyGraph actual = service.buildPartialGraph(project, dependencies, makeCountingWorkflow(fetches), rules);
+
+    // The runtime group isn't resolved, so intermediate and the runtime groups below the project are never fetched
+    assertFalse(fetches.containsKey(new Artifact(intermediate.id, new Version("1.0.0"), false)));
+    assertFalse(fetches.containsKey(new Artifact(leaf2.id, new Version("1.0.0"), false)));
+    assertFalse(actual.contains(new Dependency(intermediate.id)));
+    assertEquals(service.reduce(actual), service.reducePartial(goodGraph, rules));
+
+    // Without intermediate, nothing upgrades multiple-versions, so the partial graph selects a lower version than the
+    // full graph does for the same rules
+    ArtifactGraph reduced = service.reduce(actual);
+    assertTrue(reduced.contains(new ReifiedArtifact(multipleVersions.id, new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV1_0, null))));
+    assertFalse(reduced.contains(multipleVersions));
+    ArtifactGraph full = service.reduce(goodGraph);
+    assertTrue(full.getOutboundEdges(project).stream().anyMatch((edge) -> edge.getDestination().equals(multipleVersions) && edge.getValue().equals("compile")));
+
+    // Non-transitive rules only fetch the dependencies of the project
+    fetches.clear();
+    actual = service.buildPartialGraph(project, dependencies, makeCountingWorkflow(fetches), new TraversalRules().with("compile", new GroupTraversalRule(false, false)));
+    assertEquals(fetches.keySet(), new HashSet<>(asList(
+        new Artifact(multipleVersions.id, new Version("1.0.0"), false),
+        new Artifact(multipleVersionsDifferentDeps.id, new Version("1.0.0"), false)
+    )));
+    assertEquals(actual.size(), 3);
+  }
+
+  @Test
+  public void buildGraphs() {
+    ReifiedArtifact other = new ReifiedArtifact("org.savantbuild.test:other-project:1.0", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    Dependencies otherDependencies = makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0");
+    Map<ReifiedArtifact, Dependencies> projects = new LinkedHashMap<>();
+    projects.put(project, dependencies);
+    projects.put(other, otherDependencies);
+    DependencyGraph otherGraph = service.buildGraph(other, otherDependencies, workflow);
+
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    Map<ReifiedArtifact, DependencyGraph> actual = service.buildGraphs(projects, makeCountingWorkflow(fetches));
+    assertEquals(new ArrayList<>(actual.keySet()), asList(project, other));
+    assertEquals(actual.get(project), goodGraph);
+    assertEquals(actual.get(other), otherGraph);
+
+    // The other project only depends on artifacts that are already in the good graph, so nothing is fetched twice
+    assertEquals(fetches.size(), 11);
+    fetches.forEach((artifact, count) -> assertEquals((int) count, 1, "Fetched [" + artifact + "] more than once"));
+
+    fetches = new ConcurrentHashMap<>();
+    actual = new DefaultDependencyService(output).withFetchThreads(4).buildGraphs(projects, makeCountingWorkflow(fetches));
+    assertEquals(actual.get(project), goodGraph);
+    assertEquals(actual.get(other), otherGraph);
+    assertEquals(fetches.size(), 11);
+    fetches.forEach((artifact, count) -> assertEquals((int) count, 1, "Fetched [" + artifact + "] more than once"));
+  }
+
   @Test
   public void publishMissingFile() {
     Artifact artifact = new Artifact("org.savantbuild.test:publication-with-source:1.0.0", false);
@@ -317,6 +455,57 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     MD5.load(projectDir.resolve("build/test/publish/org/savantbuild/test/publication-without-source/1.0.0/publication-without-source-1.0.0.jar.md5"));
   }
 
+  @Test
+  public void rebuildGraph() {
+    Dependencies oldDependencies = makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0");
+    DependencyGraph previous = service.buildGraph(project, oldDependencies, workflow);
+
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    DependencyGraph actual = service.rebuildGraph(previous, oldDependencies, dependencies, makeCountingWorkflow(fetches));
+    assertEquals(actual, goodGraph);
+
+    // Nothing from the previous graph is fetched again
+    previous.getArtifactMetaData().keySet().forEach((artifact) -> assertFalse(fetches.containsKey(artifact), "Fetched [" + artifact + "] again"));
+    assertTrue(fetches.size() > 0);
+  }
+
+  @Test
+  public void rebuildGraphPartialGraph() {
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(false, "compile"));
+    DependencyGraph previous = service.buildPartialGraph(project, dependencies, workflow, rules);
+
+    // The runtime groups were never expanded, so the graph is built from scratch even though nothing changed
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    DependencyGraph actual = service.rebuildGraph(previous, dependencies, dependencies, makeCountingWorkflow(fetches));
+    assertEquals(actual, goodGraph);
+    assertNull(actual.traversedGroups);
+    assertTrue(fetches.containsKey(new Artifact(intermediate.id, new Version("1.0.0"), false)));
+    assertTrue(fetches.containsKey(new Artifact(multipleVersions.id, new Version("1.0.0"), false)));
+  }
+
+  @Test
+  public void rebuildGraphRemovesUnreachable() {
+    Dependencies newDependencies = makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0");
+    DependencyGraph expected = service.buildGraph(project, newDependencies, workflow);
+
+    Map<Artifact, Integer> fetches = new HashMap<>();
+    DependencyGraph actual = service.rebuildGraph(goodGraph, dependencies, newDependencies, makeCountingWorkflow(fetches));
+    assertEquals(actual, expected);
+    assertEquals(fetches.size(), 0);
+  }
+
+  @Test
+  public void rebuildGraphUnchanged() {
+    Dependencies dependencies = makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0");
+    DependencyGraph previous = service.buildGraph(project, dependencies, workflow);
+    assertSame(service.rebuildGraph(previous, dependencies, makeSimpleDependencies("org.savantbuild.test:multiple-versions-different-dependencies:1.1.0"), workflow), previous);
+
+    // Integration versions might have been republished, so the graph is always rebuilt
+    DependencyGraph actual = service.rebuildGraph(goodGraph, this.dependencies, this.dependencies, workflow);
+    assertNotSame(actual, goodGraph);
+    assertEquals(actual, goodGraph);
+  }
+
   /**
    * Graph:
    * <p>
@@ -440,6 +629,33 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     assertEquals(actual, expected);
   }
 
+  @Test
+  public void reduceConflicts() {
+    ArtifactID leaf = new ArtifactID("org.savantbuild.test", "leaf", "leaf", "jar");
+    ArtifactID intermediate = new ArtifactID("org.savantbuild.test", "intermediate", "intermediate", "jar");
+    ArtifactID multipleVersions = new ArtifactID("org.savantbuild.test", "multiple-versions", "multiple-versions", "jar");
+    ArtifactID multipleVersionsDifferentDeps = new ArtifactID("org.savantbuild.test", "multiple-versions-different-dependencies", "multiple-versions-different-dependencies", "jar");
+
+    DependencyGraph incompatible = new DependencyGraph(project);
+    incompatible.addEdge(new Dependency(project.id), new Dependency(multipleVersions), new DependencyEdgeValue(new Version("1.0.0"), new Version("1.0.0"), "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(project.id), new Dependency(intermediate), new DependencyEdgeValue(new Version("1.0.0"), new Version("1.0.0"), "runtime", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(project.id), new Dependency(multipleVersionsDifferentDeps), new DependencyEdgeValue(new Version("1.0.0"), new Version("1.0.0"), "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(intermediate), new Dependency(multipleVersions), new DependencyEdgeValue(new Version("1.0.0"), new Version("1.1.0"), "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(intermediate), new Dependency(multipleVersionsDifferentDeps), new DependencyEdgeValue(new Version("1.0.0"), new Version("1.1.0"), "runtime", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(multipleVersions), new Dependency(leaf), new DependencyEdgeValue(new Version("1.1.0"), new Version("1.0.0"), "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    incompatible.addEdge(new Dependency(multipleVersionsDifferentDeps), new Dependency(leaf), new DependencyEdgeValue(new Version("1.1.0"), new Version("2.0.0"), "compile", MapBuilder.simpleMap(License.Commercial, null)));
+
+    List<CompatibilityException> conflicts = new ArrayList<>();
+    ArtifactGraph actual = service.reduce(incompatible, conflicts);
+    assertEquals(conflicts.size(), 1);
+    assertEquals(conflicts.get(0).dependency.id, leaf);
+    assertEquals(conflicts.get(0).paths.get(new Version("1.0.0")).get(1).id, multipleVersions);
+    assertEquals(conflicts.get(0).paths.get(new Version("2.0.0")).get(1).id, multipleVersionsDifferentDeps);
+
+    // The highest version is selected
+    assertTrue(actual.contains(new ReifiedArtifact(leaf, new Version("2.0.0"), MapBuilder.simpleMap(License.Commercial, null))));
+  }
+
   /**
    * Graph:
    * <p>
@@ -691,12 +907,79 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     assertEquals(actual, expected);
   }
 
+  @Test
+  public void reduceParallel() {
+    ArtifactGraph actual = new DefaultDependencyService(output).withReduceThreads(4).reduce(goodGraph);
+    assertEquals(actual, goodReducedGraph);
+  }
+
   @Test
   public void reduceSimple() {
     ArtifactGraph actual = service.reduce(goodGraph);
     assertEquals(actual, goodReducedGraph);
   }
 
+  @Test
+  public void reduceStreaming() {
+    for (DefaultDependencyService streamingService : asList(service, new DefaultDependencyService(output).withReduceThreads(4))) {
+      List<ReifiedArtifact> streamed = new ArrayList<>();
+      ArtifactGraph actual = streamingService.reduce(goodGraph, streamed::add);
+      assertEquals(actual, goodReducedGraph);
+
+      // Every artifact except the root is streamed once and after all of the artifacts that depend on it
+      assertEquals(new HashSet<>(streamed), actual.values().stream().filter((artifact) -> !artifact.equals(project)).collect(Collectors.toSet()));
+      assertEquals(streamed.size(), actual.size() - 1);
+      for (ReifiedArtifact artifact : streamed) {
+        actual.getInboundEdges(artifact).stream()
+              .filter((edge) -> !edge.getOrigin().equals(project))
+              .forEach((edge) -> assertTrue(streamed.indexOf(edge.getOrigin()) < streamed.indexOf(artifact)));
+      }
+    }
+  }
+
+  @Test
+  public void reducePartial() {
+    // Every group is traversed transitively, so this is the same as reducing the entire graph
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(false, true))
+                                               .with("runtime", new GroupTraversalRule(false, true));
+    assertEquals(service.reducePartial(goodGraph, rules), goodReducedGraph);
+
+    ArtifactGraph expected = new ArtifactGraph(project);
+    expected.addEdge(project, intermediate, "runtime");
+    expected.addEdge(intermediate, multipleVersionsDifferentDeps, "runtime");
+    expected.addEdge(multipleVersionsDifferentDeps, leaf3_3, "runtime");
+    assertEquals(service.reducePartial(goodGraph, new TraversalRules().with("runtime", new GroupTraversalRule(false, "runtime"))), expected);
+  }
+
+  @Test
+  public void reducePartialOfPartialGraph() {
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(false, "compile"));
+    DependencyGraph partial = service.buildPartialGraph(project, dependencies, workflow, rules);
+    assertEquals(partial.traversedGroups, MapBuilder.simpleMap("compile", new TreeSet<>(asList("compile"))));
+    assertNull(goodGraph.traversedGroups);
+
+    // The same rules and narrower rules only traverse what was expanded
+    assertEquals(service.reducePartial(partial, rules), service.reduce(partial));
+    TraversalRules narrower = new TraversalRules().with("compile", new GroupTraversalRule(false, false));
+    assertEquals(service.reducePartial(partial, narrower), service.reduce(service.buildPartialGraph(project, dependencies, workflow, narrower)));
+
+    // Broader rules would treat the artifacts below the groups that weren't expanded as leaves
+    try {
+      service.reducePartial(partial, new TraversalRules().with("compile", new GroupTraversalRule(false, true)));
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    try {
+      service.reducePartial(partial, new TraversalRules().with("compile", new GroupTraversalRule(false, "compile"))
+                                                  .with("runtime", new GroupTraversalRule(false, "runtime")));
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
   @Test
   public void resolveGraph() {
     ArtifactGraph artifactGraph = service.reduce(goodGraph);
@@ -721,14 +1004,108 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
 
     verifyResolvedArtifacts(actual);
 
-    String expectedClasspath = String.join(File.pathSeparator, resolvedIntermediate.file.toAbsolutePath().toString(),
-        resolvedMultipleVersions.file.toAbsolutePath().toString(), resolvedLeaf1.file.toAbsolutePath().toString(),
-        resolvedIntegrationBuild.file.toAbsolutePath().toString(), resolvedMultipleVersionsDifferentDeps.file.toAbsolutePath().toString(),
+    String expectedClasspath = String.join(File.pathSeparator, resolvedMultipleVersions.file.toAbsolutePath().toString(),
+        resolvedLeaf1.file.toAbsolutePath().toString(), resolvedIntegrationBuild.file.toAbsolutePath().toString(),
+        resolvedIntermediate.file.toAbsolutePath().toString(), resolvedMultipleVersionsDifferentDeps.file.toAbsolutePath().toString(),
         resolvedLeaf1_1.file.toAbsolutePath().toString(), resolvedLeaf2_2.file.toAbsolutePath().toString(),
         resolvedLeaf3_3.file.toAbsolutePath().toString());
     assertEquals(actual.toClasspath().toString(), expectedClasspath);
   }
 
+  @Test
+  public void resolveGraphAsync() throws Exception {
+    ArtifactGraph artifactGraph = service.reduce(goodGraph);
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(true, true))
+                                               .with("runtime", new GroupTraversalRule(false, true));
+    List<ResolvedArtifact> serialFetched = new ArrayList<>();
+    ResolvedArtifactGraph expected = service.resolve(artifactGraph, workflow, rules, makeRecordingListener(serialFetched));
+
+    for (int threads : new int[]{1, 4}) {
+      List<ResolvedArtifact> consumed = new ArrayList<>();
+      List<ResolvedArtifact> fetched = new ArrayList<>();
+      CompletableFuture<ResolvedArtifactGraph> future = new DefaultDependencyService(output).withResolveThreads(threads)
+                                                                                            .resolveAsync(artifactGraph, workflow, rules, consumed::add, makeRecordingListener(fetched));
+      ResolvedArtifactGraph actual = future.get();
+      assertEquals(actual, expected);
+      assertEquals(consumed, serialFetched);
+      assertEquals(fetched, serialFetched);
+      verifyResolvedArtifacts(actual);
+    }
+
+    // The failures complete the future
+    Artifact missing = new Artifact("org.savantbuild.test:missing-item:1.0.0", false);
+    DependencyGraph graph = new DependencyGraph(project);
+    graph.addEdge(new Dependency(project.id), new Dependency(missing.id), new DependencyEdgeValue(project.version, missing.version, "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    CompletableFuture<ResolvedArtifactGraph> future = new DefaultDependencyService(output).withResolveThreads(4)
+                                                                                          .resolveAsync(service.reduce(graph), workflow, new TraversalRules().with("compile", new GroupTraversalRule(false, true)), (artifact) -> {});
+    try {
+      future.get();
+      fail("Should have failed");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof ArtifactMissingException);
+      assertEquals(((ArtifactMissingException) e.getCause()).artifact, missing);
+    }
+
+    future = service.resolveAsync(service.reduce(goodGraph), workflow,
+        new TraversalRules().with("compile", new GroupTraversalRule(true, true, License.GPLV2_0))
+                            .with("runtime", new GroupTraversalRule(true, true)), (artifact) -> {});
+    try {
+      future.get();
+      fail("Should have failed");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof LicenseException);
+    }
+  }
+
+  @Test
+  public void resolveGraphBackgroundSources() throws Exception {
+    ArtifactGraph artifactGraph = service.reduce(goodGraph);
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(true, true))
+                                               .with("runtime", new GroupTraversalRule(false, true));
+    ResolvedArtifactGraph expected = service.resolve(artifactGraph, workflow, rules);
+
+    for (int threads : new int[]{1, 4}) {
+      Map<ResolvedArtifact, Path> sources = new ConcurrentHashMap<>();
+      Set<ResolvedArtifact> sourcesFetched = ConcurrentHashMap.newKeySet();
+      DependencyListener listener = new DependencyListener() {
+        @Override
+        public void artifactFetched(ResolvedArtifact artifact) {
+        }
+
+        @Override
+        public void artifactPublished(Artifact artifact) {
+        }
+
+        @Override
+        public void sourceFetched(ResolvedArtifact artifact, Path sourceFile) {
+          sourcesFetched.add(artifact);
+          if (sourceFile != null) {
+            sources.put(artifact, sourceFile);
+          }
+        }
+      };
+
+      ResolvedArtifactGraph actual = new DefaultDependencyService(output).withBackgroundSources(true)
+                                                                         .withResolveThreads(threads)
+                                                                         .resolve(artifactGraph, workflow, rules, listener);
+      assertEquals(actual, expected);
+      actual.values().forEach((artifact) -> assertEquals(artifact.sourceFile, null));
+
+      // Once the sources have been fetched, they are the same as the sources fetched during the resolve
+      // Intermediate is only reached from the runtime group, which doesn't fetch sources
+      actual.sourcesFetched.get();
+      assertEquals(sourcesFetched.size(), 7);
+      assertFalse(sourcesFetched.contains(resolvedIntermediate));
+      for (ResolvedArtifact artifact : expected.values()) {
+        assertEquals(actual.getSourcePath(artifact.id), expected.getSourcePath(artifact.id));
+        assertEquals(sources.get(artifact), expected.getSourcePath(artifact.id));
+      }
+    }
+
+    // Without background sources, the future is already complete
+    assertTrue(expected.sourcesFetched.isDone());
+  }
+
   @Test
   public void resolveGraphFailureBadLicense() {
     ArtifactGraph artifactGraph = service.reduce(goodGraph);
@@ -764,6 +1141,89 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     }
   }
 
+  @Test
+  public void resolveGraphFetchesOnce() {
+    ArtifactGraph artifactGraph = service.reduce(goodGraph);
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(true, true))
+                                               .with("runtime", new GroupTraversalRule(true, true));
+    for (DefaultDependencyService resolveService : asList(service, new DefaultDependencyService(output).withResolveThreads(4))) {
+      Map<Artifact, Integer> fetches = new ConcurrentHashMap<>();
+      Map<Artifact, Integer> sourceFetches = new ConcurrentHashMap<>();
+      Workflow countingWorkflow = new Workflow(workflow.fetchWorkflow, workflow.publishWorkflow) {
+        @Override
+        public Path fetchArtifact(Artifact artifact) {
+          fetches.merge(artifact, 1, Integer::sum);
+          return super.fetchArtifact(artifact);
+        }
+
+        @Override
+        public Path fetchSource(Artifact artifact) {
+          sourceFetches.merge(artifact, 1, Integer::sum);
+          return super.fetchSource(artifact);
+        }
+      };
+
+      List<ResolvedArtifact> fetched = new ArrayList<>();
+      ResolvedArtifactGraph actual = resolveService.resolve(artifactGraph, countingWorkflow, rules, makeRecordingListener(fetched));
+
+      // Multiple versions (and everything below it) is reached from the project and from intermediate, but each artifact
+      // and source is only fetched once and the same ResolvedArtifact is used for both edges
+      assertEquals(actual.size(), 9);
+      assertEquals(fetches.size(), 8);
+      assertEquals(sourceFetches, fetches);
+      fetches.values().forEach((count) -> assertEquals((int) count, 1));
+      assertEquals(fetched.size(), 8);
+      assertEquals(new HashSet<>(fetched).size(), 8);
+      actual.getInboundEdges(resolvedMultipleVersions).forEach((edge) -> assertSame(edge.getDestination(), fetched.get(fetched.indexOf(resolvedMultipleVersions))));
+    }
+  }
+
+  /**
+   * Multiple versions (and everything below it) is first reached from the project in the compile group, which doesn't
+   * fetch sources, and then from intermediate in the runtime group, which does. The artifacts are only fetched once and their sources
+   * are added to the graph and passed to the listeners afterwards.
+   */
+  @Test
+  public void resolveGraphLateSources() {
+    ArtifactGraph artifactGraph = service.reduce(goodGraph);
+    ResolvedArtifactGraph expected = service.resolve(artifactGraph, workflow,
+        new TraversalRules().with("compile", new GroupTraversalRule(true, true))
+                            .with("runtime", new GroupTraversalRule(true, true)));
+
+    for (DefaultDependencyService resolveService : asList(service, new DefaultDependencyService(output).withResolveThreads(4))) {
+      List<ResolvedArtifact> fetched = new ArrayList<>();
+      Map<ResolvedArtifact, Path> sources = new HashMap<>();
+      DependencyListener listener = new DependencyListener() {
+        @Override
+        public void artifactFetched(ResolvedArtifact artifact) {
+          fetched.add(artifact);
+        }
+
+        @Override
+        public void artifactPublished(Artifact artifact) {
+        }
+
+        @Override
+        public void sourceFetched(ResolvedArtifact artifact, Path sourceFile) {
+          assertFalse(sources.containsKey(artifact));
+          sources.put(artifact, sourceFile);
+          assertTrue(fetched.stream().anyMatch((fetchedArtifact) -> fetchedArtifact == artifact));
+        }
+      };
+
+      ResolvedArtifactGraph actual = resolveService.resolve(artifactGraph, workflow,
+          new TraversalRules().with("compile", new GroupTraversalRule(false, true))
+                              .with("runtime", new GroupTraversalRule(true, true)), listener);
+      assertEquals(actual, expected);
+      assertEquals(fetched.size(), 8);
+      assertEquals(new HashSet<>(fetched).size(), 8);
+      assertTrue(sources.containsKey(resolvedMultipleVersions));
+      for (ResolvedArtifact artifact : expected.values()) {
+        assertEquals(actual.getSourcePath(artifact.id), expected.getSourcePath(artifact.id));
+      }
+    }
+  }
+
   @Test
   public void resolveGraphNonTransitiveSpecificGroups() {
     ArtifactGraph artifactGraph = service.reduce(goodGraph);
@@ -783,6 +1243,58 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     verifyResolvedArtifacts(actual);
   }
 
+  @Test
+  public void resolveGraphParallel() {
+    ArtifactGraph artifactGraph = service.reduce(goodGraph);
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(true, true))
+                                               .with("runtime", new GroupTraversalRule(false, true));
+    List<ResolvedArtifact> serialFetched = new ArrayList<>();
+    ResolvedArtifactGraph expected = service.resolve(artifactGraph, workflow, rules, makeRecordingListener(serialFetched));
+
+    List<ResolvedArtifact> fetched = new ArrayList<>();
+    ResolvedArtifactGraph actual = new DefaultDependencyService(output).withResolveThreads(4)
+                                                                       .resolve(artifactGraph, workflow, rules, makeRecordingListener(fetched));
+    assertEquals(actual, expected);
+    assertEquals(fetched, serialFetched);
+    for (int i = 0; i < fetched.size(); i++) {
+      assertEquals(fetched.get(i).sourceFile, serialFetched.get(i).sourceFile);
+    }
+
+    verifyResolvedArtifacts(actual);
+  }
+
+  @Test
+  public void resolveGraphParallelFailures() {
+    // Both artifacts fail, but the failure is always the one for the first artifact in traversal order
+    Artifact missing = new Artifact("org.savantbuild.test:missing-item:1.0.0", false);
+    Artifact badMD5 = new Artifact("org.savantbuild.test:bad-md5:1.0.0", false);
+    DependencyGraph graph = new DependencyGraph(project);
+    graph.addEdge(new Dependency(project.id), new Dependency(missing.id), new DependencyEdgeValue(project.version, missing.version, "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    graph.addEdge(new Dependency(project.id), new Dependency(badMD5.id), new DependencyEdgeValue(project.version, badMD5.version, "compile", MapBuilder.simpleMap(License.Commercial, null)));
+    ArtifactGraph artifactGraph = service.reduce(graph);
+
+    DefaultDependencyService parallel = new DefaultDependencyService(output).withResolveThreads(4);
+    for (int i = 0; i < 5; i++) {
+      try {
+        parallel.resolve(artifactGraph, workflow, new TraversalRules().with("compile", new GroupTraversalRule(false, true)));
+        fail("Should have failed");
+      } catch (ArtifactMissingException e) {
+        assertEquals(e.artifact, missing);
+      }
+    }
+
+    // Licenses are checked before anything is downloaded
+    try {
+      parallel.resolve(service.reduce(goodGraph), workflow,
+          new TraversalRules().with("compile", new GroupTraversalRule(true, true, License.GPLV2_0))
+                              .with("runtime", new GroupTraversalRule(true, true))
+      );
+      fail("Should have failed");
+    } catch (LicenseException e) {
+      assertEquals(e.artifact, leaf1);
+    }
+  }
+
   @Test
   public void resolveGraphTransitiveWithTransitiveGroups() {
     ArtifactGraph artifactGraph = service.reduce(goodGraph);
@@ -838,6 +1350,36 @@ public class DefaultDependencyServiceTest extends BaseUnitTest {
     verifyResolvedArtifacts(actual);
   }
 
+  private Workflow makeCountingWorkflow(Map<Artifact, Integer> fetches) {
+    return new Workflow(workflow.fetchWorkflow, workflow.publishWorkflow) {
+      @Override
+      public ArtifactMetaData fetchMetaData(Artifact artifact) {
+        fetches.merge(artifact, 1, Integer::sum);
+        return super.fetchMetaData(artifact);
+      }
+
+      @Override
+      public Map<Artifact, ArtifactMetaData> fetchMetaData(List<Artifact> artifacts, ExecutorService executor,
+                                                           Map<Artifact, RuntimeException> failures) {
+        artifacts.forEach((artifact) -> fetches.merge(artifact, 1, Integer::sum));
+        return super.fetchMetaData(artifacts, executor, failures);
+      }
+    };
+  }
+
+  private DependencyListener makeRecordingListener(List<ResolvedArtifact> fetched) {
+    return new DependencyListener() {
+      @Override
+      public void artifactFetched(ResolvedArtifact artifact) {
+        fetched.add(artifact);
+      }
+
+      @Override
+      public void artifactPublished(Artifact artifact) {
+      }
+    };
+  }
+
   private Dependencies makeSimpleDependencies(String dependency) {
     return new Dependencies(
         new DependencyGroup("compile", true,
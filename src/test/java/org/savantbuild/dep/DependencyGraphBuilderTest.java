@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.DependencyGraphBuilder.Order;
+import org.savantbuild.dep.DependencyService.ReducedGraphs;
+import org.savantbuild.dep.DependencyService.TraversalRules;
+import org.savantbuild.dep.DependencyService.TraversalRules.GroupTraversalRule;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.ArtifactMetaData;
+import org.savantbuild.dep.domain.CompatibilityException;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
+import org.savantbuild.dep.workflow.FetchWorkflow;
+import org.savantbuild.dep.workflow.PublishWorkflow;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.dep.workflow.process.Process;
+import org.savantbuild.dep.workflow.process.ProcessFailureException;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the DependencyGraphBuilder.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class DependencyGraphBuilderTest extends BaseUnitTest {
+  public Dependencies dependencies = new Dependencies(
+      new DependencyGroup("compile", true,
+          new Artifact("org.savantbuild.test:multiple-versions:1.0.0", false),
+          new Artifact("org.savantbuild.test:multiple-versions-different-dependencies:1.0.0", false)
+      ),
+      new DependencyGroup("run", true,
+          new Artifact("org.savantbuild.test:intermediate:1.0.0", false)
+      )
+  );
+
+  public ReifiedArtifact project = new ReifiedArtifact("org.savantbuild.test:project:1.0", MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+  @Test
+  public void allOrdersBuildTheSameGraph() {
+    Workflow workflow = makeWorkflow(new ArrayList<>());
+    DependencyGraph expected = new DependencyGraphBuilder(output, workflow).build(project, dependencies);
+
+    assertEquals(new DependencyGraphBuilder(output, workflow).withOrder(Order.BREADTH_FIRST).build(project, dependencies), expected);
+    assertEquals(new DependencyGraphBuilder(output, workflow).withPriority(Comparator.comparing((ReifiedArtifact artifact) -> artifact.id).reversed()).build(project, dependencies), expected);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(new DependencyGraphBuilder(output, workflow).withOrder(Order.BREADTH_FIRST).withExecutor(executor).build(project, dependencies), expected);
+      assertEquals(new DependencyGraphBuilder(output, workflow).withExecutor(executor).build(project, dependencies), expected);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void batchesPerProcess() {
+    List<String> fetches = new ArrayList<>();
+    Workflow workflow = makeWorkflow(fetches);
+    new DependencyGraphBuilder(output, workflow).withOrder(Order.BREADTH_FIRST).build(project, dependencies);
+
+    // The first level is fetched as one batch, so the empty process is asked for all of them before the real process
+    assertEquals(fetches.subList(0, 6), asList(
+        "empty:multiple-versions/multiple-versions-1.0.0.jar.amd",
+        "empty:multiple-versions-different-dependencies/multiple-versions-different-dependencies-1.0.0.jar.amd",
+        "empty:intermediate/intermediate-1.0.0.jar.amd",
+        "real:multiple-versions/multiple-versions-1.0.0.jar.amd",
+        "real:multiple-versions-different-dependencies/multiple-versions-different-dependencies-1.0.0.jar.amd",
+        "real:intermediate/intermediate-1.0.0.jar.amd"
+    ));
+
+    // Each AMD file is only asked for once per process
+    Map<String, Integer> counts = new HashMap<>();
+    fetches.forEach((fetch) -> counts.merge(fetch, 1, Integer::sum));
+    counts.forEach((fetch, count) -> assertEquals((int) count, 1, "Fetched [" + fetch + "] more than once"));
+  }
+
+  @Test
+  public void buildAndReduce() {
+    // X 1.1 wins and downgrades C, so the postponed C 1.0 wins in the second round. C 1.0 downgrades D, so the postponed
+    // D 1.0 wins in the third round
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:x:1.0.0", false), makeAMD("org.savantbuild.test:c:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:y:1.0.0", false), makeAMD("org.savantbuild.test:x:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:x:1.1.0", false), makeAMD("org.savantbuild.test:c:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.1.0", false), makeAMD("org.savantbuild.test:d:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.0.0", false), makeAMD("org.savantbuild.test:d:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:d:1.1.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:d:1.0.0", false), makeAMD("org.savantbuild.test:e:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:e:1.0.0", false), makeAMD());
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:x:1.0.0", false),
+            new Artifact("org.savantbuild.test:y:1.0.0", false)
+        )
+    );
+
+    DependencyGraph full = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).build(project, dependencies);
+    ReducedGraphs actual = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).buildAndReduce(project, dependencies);
+    assertEquals(actual.artifactGraph, new DependencyGraphReducer(output).reduce(full));
+    assertEquals(new DependencyGraphReducer(output).reduce(actual.dependencyGraph), actual.artifactGraph);
+    assertTrue(actual.artifactGraph.contains(new ReifiedArtifact("org.savantbuild.test:e:1.0.0", MapBuilder.simpleMap(License.ApacheV2_0, null))));
+    assertEquals(actual.dependencyGraph.postponed.size(), 0);
+
+    // The compatibility is still checked
+    amds.put(new Artifact("org.savantbuild.test:x:1.1.0", false), makeAMD("org.savantbuild.test:c:2.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:2.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:y:1.0.0", false), makeAMD("org.savantbuild.test:x:1.1.0", "org.savantbuild.test:c:1.0.0"));
+    try {
+      new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).buildAndReduce(project, dependencies);
+      fail("Should have failed");
+    } catch (CompatibilityException e) {
+      assertEquals(e.dependency.id, new ArtifactID("org.savantbuild.test", "c", "c", "jar"));
+    }
+  }
+
+  /**
+   * The edges of a batch are prepared on many threads, but they are merged into the graph in the batch order, so every
+   * node has its outbound edges in the same order as a build on a single thread.
+   */
+  @Test
+  public void executorMergesEdgesInOrder() {
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    DependencyGroup group = new DependencyGroup("compile", true);
+    for (int i = 0; i < 20; i++) {
+      String[] shared = new String[5];
+      for (int j = 0; j < shared.length; j++) {
+        shared[j] = "org.savantbuild.test:shared" + ((i + j) % 7) + ":1." + (i % 3) + ".0";
+        amds.put(new Artifact(shared[j], false), makeAMD());
+      }
+
+      Artifact artifact = new Artifact("org.savantbuild.test:artifact" + i + ":1.0.0", false);
+      amds.put(artifact, makeAMD(shared));
+      group.dependencies.add(artifact);
+    }
+
+    Dependencies dependencies = new Dependencies(group);
+    DependencyGraph expected = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).build(project, dependencies);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int round = 0; round < 10; round++) {
+        DependencyGraph actual = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).withOrder(Order.BREADTH_FIRST)
+                                                                                                               .withExecutor(executor)
+                                                                                                               .build(project, dependencies);
+        assertEquals(actual, expected);
+        for (Dependency dependency : expected.values()) {
+          assertEquals(outbound(actual, dependency), outbound(expected, dependency));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A and B use incompatible versions of C, but E, which is only expanded in the next level, upgrades A to a version
+   * that doesn't use C 1.0, so the build doesn't fail while the version of A isn't final.
+   */
+  @Test
+  public void failFastWaitsForFinalVersions() {
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:a:1.0.0", false), makeAMD("org.savantbuild.test:c:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:a:1.1.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:b:1.0.0", false), makeAMD("org.savantbuild.test:c:2.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:c:2.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:d:1.0.0", false), makeAMD("org.savantbuild.test:e:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:e:1.0.0", false), makeAMD("org.savantbuild.test:a:1.1.0"));
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:a:1.0.0", false),
+            new Artifact("org.savantbuild.test:b:1.0.0", false),
+            new Artifact("org.savantbuild.test:d:1.0.0", false)
+        )
+    );
+
+    DependencyGraph graph = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).withOrder(Order.BREADTH_FIRST)
+                                                                                                          .withFailFast(true)
+                                                                                                          .build(project, dependencies);
+    assertTrue(new DependencyGraphReducer(output).reduce(graph).contains(new ReifiedArtifact("org.savantbuild.test:c:2.0.0", MapBuilder.simpleMap(License.ApacheV2_0, null))));
+
+    // Once the upgraded version of A also uses an incompatible version of C, the conflict is reported
+    amds.put(new Artifact("org.savantbuild.test:a:1.1.0", false), makeAMD("org.savantbuild.test:c:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.1.0", false), makeAMD());
+    try {
+      new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).withOrder(Order.BREADTH_FIRST)
+                                                                                  .withFailFast(true)
+                                                                                  .build(project, dependencies);
+      fail("Should have failed");
+    } catch (CompatibilityException e) {
+      assertEquals(e.min, new Version("1.1.0"));
+      assertEquals(e.max, new Version("2.0.0"));
+    }
+  }
+
+  @Test
+  public void failureInDeclarationOrder() {
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:leaf1:1.0.0", false),
+            new Artifact("org.savantbuild.test:missing-amd:1.0.0", false),
+            new Artifact("org.savantbuild.test:missing:1.0.0", false)
+        )
+    );
+
+    try {
+      new DependencyGraphBuilder(output, makeWorkflow(new ArrayList<>())).build(project, dependencies);
+      fail("Should have failed");
+    } catch (ArtifactMetaDataMissingException e) {
+      assertEquals(e.artifactMissingAMD, new Artifact("org.savantbuild.test:missing-amd:1.0.0", false));
+    }
+  }
+
+  @Test
+  public void failFastCompatibility() {
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:a:1.0.0", false), makeAMD("org.savantbuild.test:c:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:b:1.0.0", false), makeAMD("org.savantbuild.test:c:2.0.0", "org.savantbuild.test:d:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:c:2.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:d:1.0.0", false), makeAMD("org.savantbuild.test:e:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:e:1.0.0", false), makeAMD());
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:a:1.0.0", false),
+            new Artifact("org.savantbuild.test:b:1.0.0", false)
+        )
+    );
+
+    // Without fail fast the entire graph is fetched and the conflict is only found by the reduce
+    List<Artifact> fetches = new ArrayList<>();
+    DependencyGraph graph = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, fetches)).build(project, dependencies);
+    assertTrue(fetches.contains(new Artifact("org.savantbuild.test:e:1.0.0", false)));
+    try {
+      new DependencyGraphReducer(output).reduce(graph);
+      fail("Should have failed");
+    } catch (CompatibilityException e) {
+      // Expected
+    }
+
+    fetches.clear();
+    try {
+      new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, fetches)).withFailFast(true).build(project, dependencies);
+      fail("Should have failed");
+    } catch (CompatibilityException e) {
+      assertEquals(e.min, new Version("1.0.0"));
+      assertEquals(e.max, new Version("2.0.0"));
+    }
+
+    assertFalse(fetches.contains(new Artifact("org.savantbuild.test:e:1.0.0", false)));
+
+    // Compatible versions never fail
+    amds.put(new Artifact("org.savantbuild.test:b:1.0.0", false), makeAMD("org.savantbuild.test:c:1.1.0", "org.savantbuild.test:d:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.1.0", false), makeAMD());
+    graph = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, new ArrayList<>())).withFailFast(true).build(project, dependencies);
+    assertEquals(graph.size(), 6);
+  }
+
+  @Test
+  public void lazyExpansionExpandsSelectedVersions() {
+    // X 1.1 is selected, but it downgrades C, so the postponed C 1.0 is selected and must be expanded
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:x:1.0.0", false), makeAMD("org.savantbuild.test:c:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:y:1.0.0", false), makeAMD("org.savantbuild.test:x:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:x:1.1.0", false), makeAMD("org.savantbuild.test:c:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:c:1.1.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:c:1.0.0", false), makeAMD("org.savantbuild.test:d:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:d:1.0.0", false), makeAMD());
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:x:1.0.0", false),
+            new Artifact("org.savantbuild.test:y:1.0.0", false)
+        )
+    );
+
+    List<Artifact> fetches = new ArrayList<>();
+    Workflow workflow = makeMemoryWorkflow(amds, fetches);
+    DependencyGraph full = new DependencyGraphBuilder(output, workflow).withOrder(Order.BREADTH_FIRST).build(project, dependencies);
+    DependencyGraph lazy = new DependencyGraphBuilder(output, workflow).withOrder(Order.BREADTH_FIRST).withLazyExpansion(true).build(project, dependencies);
+
+    DependencyGraphReducer reducer = new DependencyGraphReducer(output);
+    assertEquals(reducer.reduce(lazy), reducer.reduce(full));
+    assertTrue(reducer.reduce(lazy).contains(new ReifiedArtifact("org.savantbuild.test:d:1.0.0", MapBuilder.simpleMap(License.ApacheV2_0, null))));
+    assertEquals(lazy.postponed.size(), 0);
+  }
+
+  @Test
+  public void lazyExpansionSkipsLosingVersions() {
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:y:1.0.0", false), makeAMD("org.savantbuild.test:x:1.1.0"));
+    amds.put(new Artifact("org.savantbuild.test:x:1.1.0", false), makeAMD("org.savantbuild.test:f:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:x:1.0.0", false), makeAMD("org.savantbuild.test:e:1.0.0"));
+    amds.put(new Artifact("org.savantbuild.test:e:1.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:f:1.0.0", false), makeAMD());
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true,
+            new Artifact("org.savantbuild.test:y:1.0.0", false),
+            new Artifact("org.savantbuild.test:x:1.0.0", false)
+        )
+    );
+
+    List<Artifact> fullFetches = new ArrayList<>();
+    DependencyGraph full = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, fullFetches)).build(project, dependencies);
+    assertTrue(fullFetches.contains(new Artifact("org.savantbuild.test:e:1.0.0", false)));
+
+    List<Artifact> lazyFetches = new ArrayList<>();
+    DependencyGraph lazy = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, lazyFetches)).withLazyExpansion(true).build(project, dependencies);
+    assertFalse(lazyFetches.contains(new Artifact("org.savantbuild.test:e:1.0.0", false)));
+    assertEquals(lazy.postponed, new HashSet<>(asList(new Artifact("org.savantbuild.test:x:1.0.0", false))));
+
+    DependencyGraphReducer reducer = new DependencyGraphReducer(output);
+    assertEquals(reducer.reduce(lazy), reducer.reduce(full));
+  }
+
+  @Test
+  public void partialTraversalOnlyExpandsResolvedGroups() {
+    Map<Artifact, ArtifactMetaData> amds = new HashMap<>();
+    amds.put(new Artifact("org.savantbuild.test:a:1.0.0", false), new ArtifactMetaData(new Dependencies(
+        new DependencyGroup("compile", true, new Artifact("org.savantbuild.test:b:1.0.0", false)),
+        new DependencyGroup("test", true, new Artifact("org.savantbuild.test:t:1.0.0", false))
+    ), MapBuilder.simpleMap(License.ApacheV2_0, null)));
+    amds.put(new Artifact("org.savantbuild.test:b:1.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:t:1.0.0", false), makeAMD());
+    amds.put(new Artifact("org.savantbuild.test:x:1.0.0", false), makeAMD("org.savantbuild.test:y:1.0.0"));
+
+    Dependencies dependencies = new Dependencies(
+        new DependencyGroup("compile", true, new Artifact("org.savantbuild.test:a:1.0.0", false)),
+        new DependencyGroup("test", true, new Artifact("org.savantbuild.test:x:1.0.0", false))
+    );
+
+    // The test group of the project has no rule and the compile rule only expands the compile groups below it
+    List<Artifact> fetches = new ArrayList<>();
+    TraversalRules rules = new TraversalRules().with("compile", new GroupTraversalRule(false, "compile"));
+    DependencyGraph graph = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, fetches)).withPartialTraversal(rules).build(project, dependencies);
+    assertEquals(fetches, asList(new Artifact("org.savantbuild.test:a:1.0.0", false), new Artifact("org.savantbuild.test:b:1.0.0", false)));
+    assertEquals(graph.size(), 3);
+
+    // The run group reaches the same artifact with every group, so the test group of that artifact is expanded too, but
+    // the edges of its compile group are only added once
+    dependencies.groups.put("run", new DependencyGroup("run", true, new Artifact("org.savantbuild.test:a:1.0.0", false)));
+    rules.with("run", new GroupTraversalRule(false, true));
+    fetches.clear();
+    graph = new DependencyGraphBuilder(output, makeMemoryWorkflow(amds, fetches)).withPartialTraversal(rules).build(project, dependencies);
+    assertFalse(fetches.contains(new Artifact("org.savantbuild.test:x:1.0.0", false)));
+    assertEquals(graph.size(), 4);
+    assertEquals(graph.getOutboundEdges(new Dependency(new Artifact("org.savantbuild.test:a:1.0.0", false).id)).size(), 2);
+  }
+
+  private ArtifactMetaData makeAMD(String... dependencies) {
+    if (dependencies.length == 0) {
+      return new ArtifactMetaData(null, MapBuilder.simpleMap(License.ApacheV2_0, null));
+    }
+
+    DependencyGroup group = new DependencyGroup("compile", true);
+    for (String dependency : dependencies) {
+      group.dependencies.add(new Artifact(dependency, false));
+    }
+
+    return new ArtifactMetaData(new Dependencies(group), MapBuilder.simpleMap(License.ApacheV2_0, null));
+  }
+
+  private Process makeCountingProcess(String name, CacheProcess process, List<String> fetches) {
+    return new Process() {
+      @Override
+      public void deleteIntegrationBuilds(Artifact artifact) throws ProcessFailureException {
+        process.deleteIntegrationBuilds(artifact);
+      }
+
+      @Override
+      public Path fetch(Artifact artifact, String item, PublishWorkflow publishWorkflow)
+          throws ProcessFailureException {
+        synchronized (fetches) {
+          fetches.add(name + ":" + artifact.id.project + "/" + item);
+        }
+
+        return process.fetch(artifact, item, publishWorkflow);
+      }
+
+      @Override
+      public Path publish(Artifact artifact, String item, Path artifactFile) throws ProcessFailureException {
+        return process.publish(artifact, item, artifactFile);
+      }
+    };
+  }
+
+  private Workflow makeMemoryWorkflow(Map<Artifact, ArtifactMetaData> amds, List<Artifact> fetches) {
+    return new Workflow(new FetchWorkflow(output), new PublishWorkflow()) {
+      @Override
+      public Map<Artifact, ArtifactMetaData> fetchMetaData(List<Artifact> artifacts, ExecutorService executor,
+                                                           Map<Artifact, RuntimeException> failures) {
+        fetches.addAll(artifacts);
+        Map<Artifact, ArtifactMetaData> result = new HashMap<>();
+        artifacts.forEach((artifact) -> result.put(artifact, amds.get(artifact)));
+        return result;
+      }
+    };
+  }
+
+  private Workflow makeWorkflow(List<String> fetches) {
+    CacheProcess empty = new CacheProcess(output, projectDir.resolve("build/test/empty-cache").toString());
+    CacheProcess real = new CacheProcess(output, projectDir.resolve("test-deps/savant").toString());
+    return new Workflow(
+        new FetchWorkflow(output, makeCountingProcess("empty", empty, fetches), makeCountingProcess("real", real, fetches)),
+        new PublishWorkflow()
+    );
+  }
+
+  private List<String> outbound(DependencyGraph graph, Dependency dependency) {
+    return graph.getOutboundEdges(dependency).stream()
+                .map((edge) -> edge.getDestination().id + " " + edge.getValue())
+                .collect(Collectors.toList());
+  }
+}
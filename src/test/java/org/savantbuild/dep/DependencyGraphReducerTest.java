@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.domain.ArtifactID;
+import org.savantbuild.dep.domain.CompatibilityException;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.CyclicException;
+import org.savantbuild.util.Graph.Edge;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the DependencyGraphReducer. The reducer is checked against the traversal based reduction that it replaced
+ * using randomly generated graphs.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class DependencyGraphReducerTest extends BaseUnitTest {
+  private static final String[] VERSIONS = {"1.0.0", "1.1.0", "1.2.0", "2.0.0"};
+
+  public ReifiedArtifact project = new ReifiedArtifact("org.savantbuild.test:project:1.0", MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+  @Test
+  public void conflicts() {
+    ReifiedArtifact a = new ReifiedArtifact(new ArtifactID("org.savantbuild.test", "a", "a", "jar"), new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact b = new ReifiedArtifact(new ArtifactID("org.savantbuild.test", "b", "b", "jar"), new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact x = new ReifiedArtifact(new ArtifactID("org.savantbuild.test", "x", "x", "jar"), new Version("2.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact y = new ReifiedArtifact(new ArtifactID("org.savantbuild.test", "y", "y", "jar"), new Version("3.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact z = new ReifiedArtifact(new ArtifactID("org.savantbuild.test", "z", "z", "jar"), new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+    DependencyGraph graph = new DependencyGraph(project);
+    addEdge(graph, project.id, "1.0", a.id, "1.0.0");
+    addEdge(graph, project.id, "1.0", b.id, "1.0.0");
+    addEdge(graph, a.id, "1.0.0", x.id, "1.0.0");
+    addEdge(graph, a.id, "1.0.0", y.id, "1.0.0");
+    addEdge(graph, b.id, "1.0.0", x.id, "2.0.0");
+    addEdge(graph, b.id, "1.0.0", y.id, "3.0.0");
+    addEdge(graph, x.id, "2.0.0", z.id, "1.0.0");
+
+    ArtifactGraph expected = new ArtifactGraph(project);
+    expected.addEdge(project, a, "compile");
+    expected.addEdge(project, b, "compile");
+    expected.addEdge(a, x, "compile");
+    expected.addEdge(a, y, "compile");
+    expected.addEdge(b, x, "compile");
+    expected.addEdge(b, y, "compile");
+    expected.addEdge(x, z, "compile");
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (DependencyGraphReducer reducer : asList(new DependencyGraphReducer(output), new DependencyGraphReducer(output).withPool(pool))) {
+        List<CompatibilityException> conflicts = new ArrayList<>();
+        assertEquals(reducer.withConflicts(conflicts).reduce(graph), expected);
+        assertEquals(conflicts.size(), 2);
+        assertEquals(conflicts.get(0).dependency.id, x.id);
+        assertEquals(conflicts.get(0).paths.get(new Version("1.0.0")), asList(project, a));
+        assertEquals(conflicts.get(0).paths.get(new Version("2.0.0")), asList(project, b));
+        assertEquals(conflicts.get(1).dependency.id, y.id);
+        assertEquals(conflicts.get(1).min, new Version("1.0.0"));
+        assertEquals(conflicts.get(1).max, new Version("3.0.0"));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    // Without a List, the first conflict is thrown with its paths
+    try {
+      new DependencyGraphReducer(output).reduce(graph);
+      fail("Should have failed");
+    } catch (CompatibilityException e) {
+      assertEquals(e.dependency.id, x.id);
+      assertEquals(e.paths.size(), 2);
+    }
+  }
+
+  @Test
+  public void cycle() {
+    ArtifactID one = new ArtifactID("org.savantbuild.test", "one", "one", "jar");
+    ArtifactID two = new ArtifactID("org.savantbuild.test", "two", "two", "jar");
+    DependencyGraph graph = new DependencyGraph(project);
+    addEdge(graph, project.id, "1.0", one, "1.0.0");
+    addEdge(graph, one, "1.0.0", two, "1.0.0");
+    addEdge(graph, two, "1.0.0", one, "1.0.0");
+
+    try {
+      new DependencyGraphReducer(output).reduce(graph);
+      fail("Should have failed");
+    } catch (CyclicException e) {
+      // Expected
+    }
+
+    graph = new DependencyGraph(project);
+    addEdge(graph, project.id, "1.0", one, "1.0.0");
+    addEdge(graph, one, "1.0.0", project.id, "1.0");
+
+    try {
+      new DependencyGraphReducer(output).reduce(graph);
+      fail("Should have failed");
+    } catch (CyclicException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * The dependency below a pruned version used to be decided in an arbitrary order with the other nodes that were
+   * deferred, which could drop the dependencies of a deferred node. Every node is now decided after all of its parents.
+   */
+  @Test
+  public void deferredChain() {
+    ArtifactID a = new ArtifactID("org.savantbuild.test", "a", "a", "jar");
+    ArtifactID b = new ArtifactID("org.savantbuild.test", "b", "b", "jar");
+    ArtifactID pruned = new ArtifactID("org.savantbuild.test", "pruned", "pruned", "jar");
+    ArtifactID x = new ArtifactID("org.savantbuild.test", "x", "x", "jar");
+    ArtifactID y = new ArtifactID("org.savantbuild.test", "y", "y", "jar");
+
+    DependencyGraph graph = new DependencyGraph(project);
+    addEdge(graph, project.id, "1.0", a, "1.0.0");
+    addEdge(graph, project.id, "1.0", b, "1.0.0");
+    addEdge(graph, a, "1.0.0", pruned, "1.0.0");
+    addEdge(graph, b, "1.0.0", a, "1.1.0");
+    addEdge(graph, pruned, "1.0.0", x, "1.0.0");
+    addEdge(graph, b, "1.0.0", x, "1.0.0");
+    addEdge(graph, x, "1.0.0", y, "1.0.0");
+
+    ArtifactGraph actual = new DependencyGraphReducer(output).reduce(graph);
+    assertTrue(actual.contains(new ReifiedArtifact(y, new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null))));
+    assertTrue(!actual.contains(new ReifiedArtifact(pruned, new Version("1.0.0"), MapBuilder.simpleMap(License.ApacheV2_0, null))));
+  }
+
+  /**
+   * The incremental reduction only orders the affected nodes, so it falls back to a full reduction when a changed edge
+   * adds a cycle.
+   */
+  @Test
+  public void incrementalCycle() {
+    ArtifactID one = new ArtifactID("org.savantbuild.test", "one", "one", "jar");
+    ArtifactID two = new ArtifactID("org.savantbuild.test", "two", "two", "jar");
+    ArtifactID three = new ArtifactID("org.savantbuild.test", "three", "three", "jar");
+    ArtifactID four = new ArtifactID("org.savantbuild.test", "four", "four", "jar");
+    DependencyGraph graph = new DependencyGraph(project);
+    addEdge(graph, project.id, "1.0", one, "1.0.0");
+    addEdge(graph, one, "1.0.0", two, "1.0.0");
+
+    DependencyGraphReducer reducer = new DependencyGraphReducer(output);
+    ArtifactGraph previous = reducer.reduce(graph);
+
+    // A cycle that isn't reachable from the root doesn't change the reduction
+    addEdge(graph, three, "1.0.0", four, "1.0.0");
+    addEdge(graph, four, "1.0.0", three, "1.0.0");
+    addEdge(graph, four, "1.0.0", two, "1.0.0");
+    List<Edge<Dependency, DependencyEdgeValue>> changed = new ArrayList<>(graph.getOutboundEdges(new Dependency(three)));
+    changed.addAll(graph.getOutboundEdges(new Dependency(four)));
+    assertEquals(reducer.reduce(graph, previous, changed), previous);
+
+    addEdge(graph, two, "1.0.0", one, "1.0.0");
+    try {
+      reducer.reduce(graph, previous, graph.getInboundEdges(new Dependency(one)));
+      fail("Should have failed");
+    } catch (CyclicException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void incrementalMatchesFull() {
+    Random random = new Random(11);
+    for (int i = 0; i < 300; i++) {
+      long seed = random.nextLong();
+      int size = 3 + random.nextInt(30);
+      DependencyGraph before = randomGraph(new Random(seed), size);
+      DependencyGraph after = randomGraph(new Random(seed), size);
+
+      // Add a few edges to the graph, which are removed edges when going from after back to before
+      List<Edge<Dependency, DependencyEdgeValue>> changed = new ArrayList<>();
+      for (int j = 0; j < 1 + random.nextInt(3); j++) {
+        List<Dependency> nodes = after.values().stream().sorted(Comparator.comparing(Dependency::toString)).collect(Collectors.toList());
+        Dependency origin = nodes.get(random.nextInt(nodes.size()));
+        int originIndex = origin.id.equals(project.id) ? -1 : Integer.parseInt(origin.id.name.substring("artifact".length()));
+        if (originIndex == size - 1) {
+          continue;
+        }
+
+        int destinationIndex = originIndex + 1 + random.nextInt(size - originIndex - 1);
+        ArtifactID destination = new ArtifactID("org.savantbuild.test", "artifact" + destinationIndex, "artifact" + destinationIndex, "jar");
+        String dependentVersion = originIndex == -1 ? project.version.toString() : VERSIONS[random.nextInt(VERSIONS.length)];
+        after.addEdge(origin, new Dependency(destination), makeEdgeValue(random, dependentVersion, VERSIONS[random.nextInt(VERSIONS.length)]));
+        List<Edge<Dependency, DependencyEdgeValue>> outbound = after.getOutboundEdges(origin);
+        changed.add(outbound.get(outbound.size() - 1));
+      }
+
+      assertIncremental(before, after, changed, true, "Graph " + i + " " + after.toDOT());
+      assertIncremental(after, before, changed, true, "Graph " + i + " " + after.toDOT());
+      assertIncremental(before, after, changed, false, "Graph " + i + " " + after.toDOT());
+      assertIncremental(after, before, changed, false, "Graph " + i + " " + after.toDOT());
+    }
+  }
+
+  @Test
+  public void matchesTraversalReduction() {
+    Random random = new Random(42);
+    int compared = 0;
+    for (int i = 0; i < 500; i++) {
+      DependencyGraph graph = randomGraph(random, 3 + random.nextInt(15));
+
+      ArtifactGraph expected = legacyReduce(graph, true);
+      if (expected == null) {
+        continue;
+      }
+
+      compared++;
+      assertEquals(new DependencyGraphReducer(output).withLenient(true).reduce(graph), expected, "Graph " + i + " " + graph.toDOT());
+
+      ArtifactGraph strictExpected;
+      try {
+        strictExpected = legacyReduce(graph, false);
+      } catch (CompatibilityException e) {
+        strictExpected = null;
+      }
+
+      try {
+        ArtifactGraph strictActual = new DependencyGraphReducer(output).reduce(graph);
+        assertEquals(strictActual, strictExpected, "Graph " + i + " " + graph.toDOT());
+      } catch (CompatibilityException e) {
+        assertEquals(strictExpected, null, "Graph " + i + " " + graph.toDOT());
+      }
+    }
+
+    // Make sure that the generated graphs aren't mostly skipped
+    assertTrue(compared > 250, "Only compared [" + compared + "] graphs");
+  }
+
+  @Test
+  public void parallelMatchesSerial() {
+    Random random = new Random(7);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int i = 0; i < 200; i++) {
+        DependencyGraph graph = randomGraph(random, 3 + random.nextInt(30));
+        DependencyGraphReducer serial = new DependencyGraphReducer(output);
+        DependencyGraphReducer parallel = new DependencyGraphReducer(output).withPool(pool);
+        assertEquals(parallel.withLenient(true).reduce(graph), serial.withLenient(true).reduce(graph), "Graph " + i + " " + graph.toDOT());
+
+        serial.withLenient(false);
+        parallel.withLenient(false);
+        try {
+          ArtifactGraph expected = serial.reduce(graph);
+          assertEquals(parallel.reduce(graph), expected, "Graph " + i + " " + graph.toDOT());
+        } catch (CompatibilityException e) {
+          try {
+            parallel.reduce(graph);
+            fail("Should have failed");
+          } catch (CompatibilityException actual) {
+            assertEquals(actual.dependency, e.dependency);
+          }
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void addEdge(DependencyGraph graph, ArtifactID origin, String dependentVersion, ArtifactID destination,
+                       String dependencyVersion) {
+    graph.addEdge(new Dependency(origin), new Dependency(destination), new DependencyEdgeValue(new Version(dependentVersion), new Version(dependencyVersion), "compile", MapBuilder.simpleMap(License.ApacheV2_0, null)));
+  }
+
+  private void assertIncremental(DependencyGraph previousGraph, DependencyGraph graph,
+                                 List<Edge<Dependency, DependencyEdgeValue>> changed, boolean lenient, String message) {
+    DependencyGraphReducer reducer = new DependencyGraphReducer(output).withLenient(lenient);
+    ArtifactGraph previous;
+    try {
+      previous = reducer.reduce(previousGraph);
+    } catch (CompatibilityException e) {
+      return;
+    }
+
+    try {
+      ArtifactGraph expected = reducer.reduce(graph);
+      ArtifactGraph actual = reducer.reduce(graph, previous, changed);
+      assertEquals(actual, expected, message);
+
+      // The outbound edges are resolved in order, so they must be in the same order as the full reduction
+      for (ReifiedArtifact artifact : expected.values()) {
+        assertEquals(outbound(actual, artifact), outbound(expected, artifact), message + " " + artifact);
+      }
+    } catch (CompatibilityException e) {
+      try {
+        reducer.reduce(graph, previous, changed);
+        fail("Should have failed " + message);
+      } catch (CompatibilityException actual) {
+        assertEquals(actual.dependency, e.dependency, message);
+      }
+    }
+  }
+
+  private boolean checkAndAdd(DependencyGraph graph, Map<ArtifactID, ReifiedArtifact> artifacts, Dependency destination,
+                              ArtifactGraph artifactGraph, boolean lenient) {
+    List<Edge<Dependency, DependencyEdgeValue>> significantInbound =
+        graph.getInboundEdges(destination).stream()
+             .filter((edge) -> artifacts.containsKey(edge.getOrigin().id))
+             .filter((edge) -> edge.getValue().dependentVersion.equals(artifacts.get(edge.getOrigin().id).version))
+             .collect(Collectors.toList());
+    Version min = significantInbound.stream().map((edge) -> edge.getValue().dependencyVersion).min(Version::compareTo).orElse(null);
+    Version max = significantInbound.stream().map((edge) -> edge.getValue().dependencyVersion).max(Version::compareTo).orElse(null);
+    if (min == null) {
+      return false;
+    }
+
+    if (!lenient && !destination.skipCompatibilityCheck && !min.isCompatibleWith(max)) {
+      throw new CompatibilityException(graph, destination, min, max);
+    }
+
+    DependencyEdgeValue edgeValue = significantInbound.stream().filter((edge) -> edge.getValue().dependencyVersion.equals(max)).findFirst().get().getValue();
+    ReifiedArtifact destinationArtifact = new ReifiedArtifact(destination.id, max, edgeValue.licenses);
+    artifacts.put(destination.id, destinationArtifact);
+    significantInbound.forEach((edge) -> artifactGraph.addEdge(artifacts.get(edge.getOrigin().id), destinationArtifact, edge.getValue().type));
+    return true;
+  }
+
+  /**
+   * The traversal based reduction that the DependencyGraphReducer replaced. When a deferred node depends on another
+   * deferred node, the result depended on the iteration order of a HashSet, so those graphs can't be compared and null
+   * is returned.
+   */
+  private ArtifactGraph legacyReduce(DependencyGraph graph, boolean lenient) {
+    ArtifactGraph artifactGraph = new ArtifactGraph(graph.root);
+    Map<ArtifactID, ReifiedArtifact> artifacts = new HashMap<>();
+    artifacts.put(graph.root.id, graph.root);
+
+    Set<Dependency> seenAtLeastOnce = new HashSet<>();
+    graph.traverse(new Dependency(graph.root.id), false, null, (origin, destination, edgeValue, depth, isLast) -> {
+      List<Edge<Dependency, DependencyEdgeValue>> inboundEdges = graph.getInboundEdges(destination);
+      if (inboundEdges.size() > 0 && inboundEdges.stream().allMatch((edge) -> artifacts.containsKey(edge.getOrigin().id))) {
+        seenAtLeastOnce.remove(destination);
+        return checkAndAdd(graph, artifacts, destination, artifactGraph, lenient);
+      }
+
+      seenAtLeastOnce.add(destination);
+      return true;
+    });
+
+    boolean ambiguous = seenAtLeastOnce.stream()
+                                       .flatMap((dependency) -> graph.getInboundEdges(dependency).stream())
+                                       .anyMatch((edge) -> seenAtLeastOnce.contains(edge.getOrigin()));
+    if (ambiguous) {
+      return null;
+    }
+
+    seenAtLeastOnce.forEach((dependency) -> checkAndAdd(graph, artifacts, dependency, artifactGraph, lenient));
+    return artifactGraph;
+  }
+
+  /**
+   * Generates a graph that looks like a real DependencyGraph. Artifacts only depend on artifacts with a higher index so
+   * there are no cycles and each version of an artifact has its own dependencies.
+   */
+  private List<String> outbound(ArtifactGraph graph, ReifiedArtifact artifact) {
+    return graph.getOutboundEdges(artifact).stream()
+                .map((edge) -> edge.getDestination() + " " + edge.getValue())
+                .collect(Collectors.toList());
+  }
+
+  private DependencyGraph randomGraph(Random random, int size) {
+    ArtifactID[] ids = new ArtifactID[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = new ArtifactID("org.savantbuild.test", "artifact" + i, "artifact" + i, "jar");
+    }
+
+    DependencyGraph graph = new DependencyGraph(project);
+    Set<String> expanded = new HashSet<>();
+    for (int i = 0; i < 1 + random.nextInt(3); i++) {
+      int destination = random.nextInt(size);
+      String version = VERSIONS[random.nextInt(VERSIONS.length)];
+      graph.addEdge(new Dependency(project.id), new Dependency(ids[destination]), makeEdgeValue(random, project.version.toString(), version));
+      expand(graph, random, ids, destination, version, expanded);
+    }
+
+    if (random.nextInt(10) == 0) {
+      List<Dependency> nodes = new ArrayList<>(graph.values());
+      graph.skipCompatibilityCheck(nodes.get(random.nextInt(nodes.size())).id);
+    }
+
+    return graph;
+  }
+
+  private void expand(DependencyGraph graph, Random random, ArtifactID[] ids, int origin, String version,
+                      Set<String> expanded) {
+    if (!expanded.add(origin + ":" + version) || origin == ids.length - 1) {
+      return;
+    }
+
+    int count = random.nextInt(4);
+    for (int i = 0; i < count; i++) {
+      int destination = origin + 1 + random.nextInt(ids.length - origin - 1);
+      String destinationVersion = VERSIONS[random.nextInt(VERSIONS.length)];
+      graph.addEdge(new Dependency(ids[origin]), new Dependency(ids[destination]), makeEdgeValue(random, version, destinationVersion));
+      expand(graph, random, ids, destination, destinationVersion, expanded);
+    }
+  }
+
+  private DependencyEdgeValue makeEdgeValue(Random random, String dependentVersion, String dependencyVersion) {
+    return new DependencyEdgeValue(new Version(dependentVersion), new Version(dependencyVersion), random.nextBoolean() ? "compile" : "run",
+        MapBuilder.simpleMap(random.nextBoolean() ? License.ApacheV2_0 : License.BSD, null));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.savantbuild.dep.ReductionIndex.IndexedEdge;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.DependencyEdgeValue;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the ReductionIndex.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class ReductionIndexTest extends BaseUnitTest {
+  @Test
+  public void index() {
+    ReifiedArtifact root = new ReifiedArtifact("group:project:root:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact one = new ReifiedArtifact("group:project:artifact1:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact two = new ReifiedArtifact("group:project:artifact2:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact hub = new ReifiedArtifact("group:project:hub:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.addEdge(new Dependency(root.id), new Dependency(two.id), new DependencyEdgeValue(new Version("1.0"), new Version("1.0"), "compile", two.licenses));
+    graph.addEdge(new Dependency(root.id), new Dependency(one.id), new DependencyEdgeValue(new Version("1.0"), new Version("1.0"), "compile", one.licenses));
+    graph.addEdge(new Dependency(two.id), new Dependency(hub.id), new DependencyEdgeValue(new Version("1.0"), new Version("1.0"), "compile", hub.licenses));
+    graph.addEdge(new Dependency(one.id), new Dependency(hub.id), new DependencyEdgeValue(new Version("1.0"), new Version("1.1"), "compile", hub.licenses));
+    graph.addEdge(new Dependency(two.id), new Dependency(hub.id), new DependencyEdgeValue(new Version("2.0"), new Version("2.0"), "compile", hub.licenses));
+    graph.addEdge(new Dependency(two.id), new Dependency(hub.id), new DependencyEdgeValue(new Version("1.0"), new Version("1.0"), "run", hub.licenses));
+
+    ReductionIndex index = new ReductionIndex(graph);
+    assertEquals(new ArrayList<>(index.origins(new Dependency(hub.id))), asList(two.id, one.id));
+    assertTrue(index.origins(new Dependency(root.id)).isEmpty());
+
+    // The edges from a single version of an origin keep their positions in the inbound edge list
+    List<IndexedEdge> edges = index.edges(new Dependency(hub.id), two.id, new Version("1.0"));
+    assertEquals(edges.stream().map((edge) -> edge.value.type).collect(Collectors.toList()), asList("compile", "run"));
+    assertEquals(edges.stream().map((edge) -> edge.ordinal).collect(Collectors.toList()), asList(0, 3));
+    assertEquals(index.edges(new Dependency(hub.id), two.id, new Version("2.0")).get(0).value.dependencyVersion, new Version("2.0"));
+    assertTrue(index.edges(new Dependency(hub.id), two.id, new Version("3.0")).isEmpty());
+    assertTrue(index.edges(new Dependency(hub.id), root.id, new Version("1.0")).isEmpty());
+  }
+}
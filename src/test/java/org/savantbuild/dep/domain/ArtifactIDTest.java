@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.domain;
+
+import org.savantbuild.dep.BaseUnitTest;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests the artifact id domain object.
+ *
+ * @author Brian Pontarelli
+ */
+public class ArtifactIDTest extends BaseUnitTest {
+  @Test
+  public void clearInterned() {
+    ArtifactID id = ArtifactID.intern("org.example.intern", "project", "cleared", "jar");
+    ArtifactID.clearInterned();
+
+    // A new instance becomes the canonical instance, but it is still equal to the old one
+    ArtifactID copy = new ArtifactID("org.example.intern", "project", "cleared", "jar");
+    assertSame(copy.intern(), copy);
+    assertNotSame(id.intern(), id);
+    assertEquals(id, copy);
+  }
+
+  @Test
+  public void intern() {
+    ArtifactID id = new ArtifactID("org.example.intern", "project", "name", "jar");
+    ArtifactID copy = new ArtifactID(new String("org.example.intern"), new String("project"), new String("name"), new String("jar"));
+    assertNotSame(id, copy);
+    assertEquals(id, copy);
+    assertEquals(id.hashCode(), copy.hashCode());
+
+    ArtifactID interned = copy.intern();
+    assertSame(interned, copy);
+    assertSame(id.intern(), copy);
+    assertSame(ArtifactID.intern("org.example.intern", "project", "name", "jar"), copy);
+    assertSame(new Artifact("org.example.intern:project:name:1.0:jar", false).id, copy);
+
+    ArtifactID other = ArtifactID.intern("org.example.intern", "project", "name", "zip");
+    assertNotSame(other, copy);
+    assertNotEquals(other, copy);
+  }
+}
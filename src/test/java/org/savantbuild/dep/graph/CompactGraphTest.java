@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.graph;
+
+import org.savantbuild.dep.BaseUnitTest;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the CompactGraph.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class CompactGraphTest extends BaseUnitTest {
+  @Test
+  public void freezeDependencyGraph() {
+    ReifiedArtifact root = new ReifiedArtifact("group:project:root:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact one = new ReifiedArtifact("group:project:artifact1:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact two = new ReifiedArtifact("group:project:artifact2:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact hub = new ReifiedArtifact("group:project:hub:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact orphan = new ReifiedArtifact("group:project:orphan:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.addEdge(new Dependency(two.id), new Dependency(hub.id), new DependencyEdgeValue(two.version, hub.version, "compile", hub.licenses));
+    graph.addEdge(new Dependency(root.id), new Dependency(one.id), new DependencyEdgeValue(root.version, one.version, "compile", one.licenses));
+    graph.addEdge(new Dependency(root.id), new Dependency(two.id), new DependencyEdgeValue(root.version, two.version, "run", two.licenses));
+    graph.addEdge(new Dependency(one.id), new Dependency(hub.id), new DependencyEdgeValue(one.version, hub.version, "compile", hub.licenses));
+    graph.addEdge(new Dependency(orphan.id), new Dependency(hub.id), new DependencyEdgeValue(orphan.version, hub.version, "compile", hub.licenses));
+    graph.skipCompatibilityCheck(hub.id);
+
+    CompactGraph<Dependency, DependencyEdgeValue> compact = graph.freeze();
+    assertEquals(compact.size(), 5);
+    assertEquals(compact.edgeCount(), 5);
+
+    // The reachable nodes are numbered breadth first from the root and the others come last
+    assertEquals(compact.node(0).id, root.id);
+    assertEquals(compact.node(1).id, one.id);
+    assertEquals(compact.node(2).id, two.id);
+    assertEquals(compact.node(3).id, hub.id);
+    assertEquals(compact.node(4).id, orphan.id);
+    assertTrue(compact.node(3).skipCompatibilityCheck);
+
+    // The outbound edges are in the order they were added
+    assertEquals(compact.outboundCount(0), 2);
+    assertEquals(compact.destination(compact.outboundEdge(0, 0)), 1);
+    assertEquals(compact.destination(compact.outboundEdge(0, 1)), 2);
+    assertEquals(compact.value(compact.outboundEdge(0, 1)).type, "run");
+
+    // The inbound edges are in the order they were added, which isn't the order of the edge indices
+    int hubIndex = compact.indexOf(new Dependency(hub.id));
+    assertEquals(compact.inboundCount(hubIndex), 3);
+    assertEquals(compact.origin(compact.inboundEdge(hubIndex, 0)), 2);
+    assertEquals(compact.origin(compact.inboundEdge(hubIndex, 1)), 1);
+    assertEquals(compact.origin(compact.inboundEdge(hubIndex, 2)), 4);
+    assertSame(compact.value(compact.inboundEdge(hubIndex, 0)), graph.getInboundEdges(new Dependency(hub.id)).get(0).getValue());
+    assertEquals(compact.inboundCount(0), 0);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.graph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.savantbuild.dep.BaseUnitTest;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.graph.DependencyGraph.Dependency;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the DependencyGraphSnapshot.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class DependencyGraphSnapshotTest extends BaseUnitTest {
+  @Test
+  public void containsIntegrationVersions() {
+    ReifiedArtifact root = new ReifiedArtifact("group:project:root:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact one = new ReifiedArtifact("group:project:artifact1:1.0-{integration}:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+    DependencyGraph graph = new DependencyGraph(root);
+    assertFalse(DependencyGraphSnapshot.containsIntegrationVersions(graph));
+
+    graph.addEdge(new Dependency(root.id), new Dependency(one.id), new DependencyEdgeValue(root.version, one.version, "compile", MapBuilder.simpleMap(License.ApacheV2_0, null)));
+    assertTrue(DependencyGraphSnapshot.containsIntegrationVersions(graph));
+  }
+
+  @Test
+  public void readBadFile() throws IOException {
+    Path file = projectDir.resolve("build/test/snapshots/bad.graph");
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+    try {
+      DependencyGraphSnapshot.read(file);
+      fail("Should have failed");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    ReifiedArtifact root = new ReifiedArtifact("group:project:root:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact one = new ReifiedArtifact("group:project:artifact1:1.0:jar", MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ReifiedArtifact two = new ReifiedArtifact("group:project:artifact2:1.0:jar", MapBuilder.simpleMap(License.Commercial, "Commercial license"));
+    ReifiedArtifact three = new ReifiedArtifact("group:project:artifact3:2.0:jar", MapBuilder.simpleMap(License.GPLV2_0, null));
+
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.addEdge(new Dependency(root.id), new Dependency(one.id), new DependencyEdgeValue(root.version, one.version, "compile", one.licenses));
+    graph.addEdge(new Dependency(root.id), new Dependency(two.id), new DependencyEdgeValue(root.version, two.version, "run", two.licenses));
+    graph.addEdge(new Dependency(one.id), new Dependency(three.id), new DependencyEdgeValue(one.version, three.version, "compile", three.licenses));
+    graph.addEdge(new Dependency(two.id), new Dependency(three.id), new DependencyEdgeValue(two.version, three.version, "compile", three.licenses));
+    graph.skipCompatibilityCheck(three.id);
+    graph.postponed.add(new Artifact("group:project:artifact3:1.5:jar", false));
+
+    Path file = projectDir.resolve("build/test/snapshots/test.graph");
+    DependencyGraphSnapshot.write(graph, file);
+
+    DependencyGraph actual = DependencyGraphSnapshot.read(file);
+    assertEquals(actual, graph);
+    assertEquals(actual.root.licenses, root.licenses);
+    assertEquals(actual.postponed, graph.postponed);
+    assertTrue(actual.find(new Dependency(root.id), (dependency) -> dependency.id.equals(three.id)).skipCompatibilityCheck);
+    assertFalse(actual.find(new Dependency(root.id), (dependency) -> dependency.id.equals(one.id)).skipCompatibilityCheck);
+    assertNull(actual.traversedGroups);
+
+    // The groups of a graph that was built for TraversalRules
+    graph.traversedGroups = new TreeMap<>();
+    graph.traversedGroups.put("compile", new TreeSet<>(asList("compile", "provided")));
+    graph.traversedGroups.put("run", null);
+    graph.traversedGroups.put("test", new TreeSet<>());
+    DependencyGraphSnapshot.write(graph, file);
+
+    actual = DependencyGraphSnapshot.read(file);
+    assertEquals(actual, graph);
+    assertEquals(actual.traversedGroups, graph.traversedGroups);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.dep.workflow;
+
+import java.time.Duration;
+
+import org.savantbuild.dep.BaseUnitTest;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.ArtifactMetaData;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests the ArtifactMetaDataCache.
+ *
+ * @author Brian Pontarelli
+ */
+@Test(groups = "unit")
+public class ArtifactMetaDataCacheTest extends BaseUnitTest {
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    ArtifactMetaDataCache cache = new ArtifactMetaDataCache(4, Duration.ofMinutes(1));
+    Artifact first = new Artifact("org.savantbuild.test:first:1.0.0", false);
+    Artifact second = new Artifact("org.savantbuild.test:second:1.0.0", false);
+    Artifact third = new Artifact("org.savantbuild.test:third:1.0.0", false);
+
+    ArtifactMetaData leaf = new ArtifactMetaData(null, MapBuilder.simpleMap(License.ApacheV2_0, null));
+    ArtifactMetaData withDependency = new ArtifactMetaData(
+        new Dependencies(new DependencyGroup("compile", true, new Artifact("org.savantbuild.test:leaf:1.0.0", false))),
+        MapBuilder.simpleMap(License.ApacheV2_0, null)
+    );
+
+    cache.put(first, leaf);
+    cache.put(second, withDependency);
+    assertEquals(cache.getWeight(), 3);
+
+    // Touch the first so that the second is the least recently used
+    assertSame(cache.get(first), leaf);
+    cache.put(third, withDependency);
+
+    assertNull(cache.get(second));
+    assertSame(cache.get(first), leaf);
+    assertSame(cache.get(third), withDependency);
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getWeight(), 3);
+    assertEquals(cache.getEvictionCount(), 1);
+    assertEquals(cache.getHitCount(), 3);
+    assertEquals(cache.getMissCount(), 1);
+  }
+
+  @Test
+  public void integrationVersionsExpire() {
+    ArtifactMetaDataCache cache = new ArtifactMetaDataCache(100, Duration.ZERO);
+    Artifact release = new Artifact("org.savantbuild.test:release:1.0.0", false);
+    Artifact integration = new Artifact("org.savantbuild.test:integration:1.0.0-{integration}", false);
+    ArtifactMetaData amd = new ArtifactMetaData(null, MapBuilder.simpleMap(License.ApacheV2_0, null));
+
+    cache.put(release, amd);
+    cache.put(integration, amd);
+
+    assertSame(cache.get(release), amd);
+    assertNull(cache.get(integration));
+    assertEquals(cache.getExpirationCount(), 1);
+    assertEquals(cache.size(), 1);
+  }
+
+  @Test
+  public void workflow() {
+    ArtifactMetaDataCache cache = new ArtifactMetaDataCache(100, Duration.ofMinutes(1));
+    CacheProcess process = new CacheProcess(output, projectDir.resolve("test-deps/savant").toString());
+    Workflow workflow = new Workflow(new FetchWorkflow(output, process), new PublishWorkflow(), cache);
+
+    Artifact artifact = new Artifact("org.savantbuild.test:multiple-versions:1.0.0", false);
+    ArtifactMetaData amd = workflow.fetchMetaData(artifact);
+    assertEquals(cache.getMissCount(), 1);
+    assertSame(workflow.fetchMetaData(artifact), amd);
+    assertEquals(cache.getHitCount(), 1);
+  }
+}